@@ -14,14 +14,14 @@ import app.seller.Seller;
 import app.ui.ComponentHelper;
 import app.ui.PlaceholderPasswordTextField;
 import app.ui.PlaceholderTextField;
+import app.ui.ScreenLoader;
 import app.util.ColorUtils;
 import app.util.Utils;
+import app.util.data.PersistenceScheduler;
 
-import javax.imageio.ImageIO;
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
 import java.awt.*;
-import java.io.IOException;
 import java.util.Objects;
 import java.util.function.Consumer;
 
@@ -37,6 +37,8 @@ public class Main {
     }
 
     public static void reset() {
+        // Anything still loading was for the screen being left.
+        ScreenLoader.getInstance().cancelAll();
         window.getContentPane().removeAll();
     }
 
@@ -78,13 +80,7 @@ public class Main {
             var panel = new JPanel();
             panel.setOpaque(false);
 
-            try {
-                var image = Utils.getCircularImage(ImageIO.read(Main.class.getResourceAsStream("/images/profile.png")))
-                    .getScaledInstance(128, 128, Image.SCALE_SMOOTH);
-                panel.add(new JLabel(new ImageIcon(image)));
-            } catch (IOException e) {
-                throw new RuntimeException(e);
-            }
+            panel.add(new JLabel(new ImageIcon(Utils.getCircularImage("profile.png", 128, 128))));
 
             mainPanel.add(panel);
         }
@@ -219,13 +215,7 @@ public class Main {
             var panel = new JPanel();
             panel.setOpaque(false);
 
-            try {
-                var image = Utils.getCircularImage(ImageIO.read(Main.class.getResourceAsStream("/images/profile.png")))
-                    .getScaledInstance(128, 128, Image.SCALE_SMOOTH);
-                panel.add(new JLabel(new ImageIcon(image)));
-            } catch (IOException e) {
-                throw new RuntimeException(e);
-            }
+            panel.add(new JLabel(new ImageIcon(Utils.getCircularImage("profile.png", 128, 128))));
 
             mainPanel.add(panel);
         }
@@ -399,6 +389,9 @@ public class Main {
         Customer.init();
         Seller.init();
 
+        // Anything still waiting to be saved in the background needs writing out before we exit.
+        Runtime.getRuntime().addShutdownHook(new Thread(PersistenceScheduler.getInstance()::flushAll, "Persistence Shutdown Flush"));
+
         createLoginScreen();
 
         if (IS_TESTING) { // Add testing data
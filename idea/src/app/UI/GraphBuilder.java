@@ -1,18 +1,46 @@
 package app.ui;
 
 import java.awt.*;
+import java.awt.geom.Path2D;
 import java.awt.image.BufferedImage;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
+import java.util.function.DoubleFunction;
 
+// Draws a series of evenly spaced points (such as revenue per day) as a line or bar graph. Series with more points
+// than there are pixels to draw them in are cut down to the lowest and highest point in each pixel's worth, so spikes
+// still show up however long the series is. The drawn image is kept until the points or settings change, so the same
+// graph can be shown again without drawing it again.
+// Graphs may be filled in and drawn in the background (see ScreenLoader), so everything here is synchronized.
 public class GraphBuilder {
+    public enum Style {
+        LINE,
+        BAR
+    }
+
+    // Space left around the plot for the axis labels.
+    private static final int LEFT_MARGIN = 70;
+    private static final int RIGHT_MARGIN = 10;
+    private static final int TOP_MARGIN = 10;
+    private static final int BOTTOM_MARGIN = 20;
+    private static final int GRID_LINES = 4;
+    // Bars thinner than this (including the gap between them) are hard to tell apart.
+    private static final int MIN_BAR_WIDTH = 3;
+
     private final int width;
     private final int height;
     private final Color lineColor;
     private final Color markingColor;
     private final Color backgroundColor;
 
-    private final List<Integer> keyPoints = new ArrayList<>();
+    private double[] keyPoints = new double[16];
+    private int keyPointCount = 0;
+
+    private Style style = Style.LINE;
+    private DoubleFunction<String> valueFormatter = value -> String.format("%.0f", value);
+    private String startLabel = "";
+    private String endLabel = "";
+
+    private BufferedImage cachedImage;
 
     public GraphBuilder(int width, int height, Color lineColor, Color markingColor, Color backgroundColor) {
         this.width = width;
@@ -22,11 +50,54 @@ public class GraphBuilder {
         this.backgroundColor = backgroundColor;
     }
 
-    public void addKeypoint(int point) {
-        this.keyPoints.add(point);
+    public synchronized void addKeypoint(double point) {
+        if (keyPointCount == keyPoints.length)
+            keyPoints = Arrays.copyOf(keyPoints, keyPoints.length * 2);
+
+        keyPoints[keyPointCount++] = point;
+        cachedImage = null;
+    }
+
+    // Replaces every point at once. If they're the same as the current ones, the drawn image is kept.
+    public synchronized void setKeypoints(double[] points) {
+        if (Arrays.equals(keyPoints, 0, keyPointCount, points, 0, points.length))
+            return;
+
+        keyPoints = Arrays.copyOf(points, Math.max(points.length, 16));
+        keyPointCount = points.length;
+        cachedImage = null;
+    }
+
+    public synchronized void setStyle(Style style) {
+        this.style = style;
+        cachedImage = null;
+    }
+
+    // How the values on the side of the graph are shown, such as Utils::formatCurrency.
+    public synchronized void setValueFormatter(DoubleFunction<String> valueFormatter) {
+        this.valueFormatter = valueFormatter;
+        cachedImage = null;
+    }
+
+    // Shown under the first and last point, such as the dates the series covers.
+    public synchronized void setLabels(String startLabel, String endLabel) {
+        if (this.startLabel.equals(startLabel) && this.endLabel.equals(endLabel))
+            return;
+
+        this.startLabel = startLabel;
+        this.endLabel = endLabel;
+        cachedImage = null;
     }
 
-    public BufferedImage createImage() {
+    // The image is shared between calls until something changes, so it must not be drawn onto.
+    public synchronized BufferedImage createImage() {
+        if (cachedImage == null)
+            cachedImage = this.draw();
+
+        return cachedImage;
+    }
+
+    private BufferedImage draw() {
         var image = new BufferedImage(this.width, this.height, BufferedImage.TYPE_INT_ARGB);
 
         var g2d = (Graphics2D) image.getGraphics();
@@ -35,7 +106,7 @@ public class GraphBuilder {
         g2d.setColor(backgroundColor);
         g2d.fillRect(0, 0, this.width, this.height);
 
-        if (keyPoints.isEmpty()) { // Just return a text notifying empty data
+        if (keyPointCount == 0) { // Just return a text notifying empty data
             g2d.setColor(lineColor);
             g2d.drawString("No data available!", this.width / 2 - 50, this.height / 2);
             g2d.dispose();
@@ -43,19 +114,138 @@ public class GraphBuilder {
             return image;
         }
 
-        int lowest = keyPoints.getFirst(), highest = keyPoints.getFirst();
-
-        for (Integer keyPoint : keyPoints) {
-            if (keyPoint < lowest)
-                lowest = keyPoint;
+        double lowest = keyPoints[0], highest = keyPoints[0];
 
-            if (keyPoint > highest)
-                highest = keyPoint;
+        for (var i = 0; i < keyPointCount; i++) {
+            lowest = Math.min(lowest, keyPoints[i]);
+            highest = Math.max(highest, keyPoints[i]);
         }
 
+        // Start from zero where possible, so the graph doesn't make small changes look huge.
+        lowest = Math.min(lowest, 0);
+
+        if (highest == lowest)
+            highest = lowest + 1;
+
+        var plot = new Rectangle(LEFT_MARGIN, TOP_MARGIN, this.width - LEFT_MARGIN - RIGHT_MARGIN, this.height - TOP_MARGIN - BOTTOM_MARGIN);
+        var scale = new Scale(plot, lowest, highest);
+
+        this.drawMarkings(g2d, plot, scale);
+
         g2d.setColor(this.lineColor);
 
+        switch (style) {
+            case LINE -> this.drawLine(g2d, plot, scale);
+            case BAR -> this.drawBars(g2d, plot, scale);
+        }
+
         g2d.dispose();
         return image;
     }
+
+    private void drawMarkings(Graphics2D g2d, Rectangle plot, Scale scale) {
+        var metrics = g2d.getFontMetrics();
+
+        g2d.setColor(this.markingColor);
+
+        for (var i = 0; i <= GRID_LINES; i++) {
+            var value = scale.lowest + (scale.highest - scale.lowest) * i / GRID_LINES;
+            var y = (int) Math.round(scale.toY(value));
+            var label = valueFormatter.apply(value);
+
+            g2d.drawLine(plot.x, y, plot.x + plot.width, y);
+            g2d.drawString(label, plot.x - metrics.stringWidth(label) - 4, y + metrics.getAscent() / 2);
+        }
+
+        var labelY = plot.y + plot.height + metrics.getAscent() + 2;
+        g2d.drawString(startLabel, plot.x, labelY);
+        g2d.drawString(endLabel, plot.x + plot.width - metrics.stringWidth(endLabel), labelY);
+    }
+
+    private void drawLine(Graphics2D g2d, Rectangle plot, Scale scale) {
+        g2d.setStroke(new BasicStroke(1.5f));
+
+        if (keyPointCount == 1) {
+            var y = (int) Math.round(scale.toY(keyPoints[0]));
+            g2d.fillOval(plot.x + plot.width / 2 - 2, y - 2, 5, 5);
+            return;
+        }
+
+        var path = new Path2D.Double();
+
+        if (keyPointCount <= plot.width) {
+            for (var i = 0; i < keyPointCount; i++) {
+                var x = plot.x + (double) plot.width * i / (keyPointCount - 1);
+                var y = scale.toY(keyPoints[i]);
+
+                if (i == 0)
+                    path.moveTo(x, y);
+                else
+                    path.lineTo(x, y);
+            }
+        } else {
+            // One bucket per pixel, drawn as a line from its lowest to highest point, with each joined to the next.
+            var buckets = downsample(keyPoints, keyPointCount, plot.width);
+
+            for (var i = 0; i < plot.width; i++) {
+                var x = plot.x + i + 0.5;
+
+                if (i == 0)
+                    path.moveTo(x, scale.toY(buckets.lowest[i]));
+                else
+                    path.lineTo(x, scale.toY(buckets.lowest[i]));
+
+                path.lineTo(x, scale.toY(buckets.highest[i]));
+            }
+        }
+
+        g2d.draw(path);
+    }
+
+    private void drawBars(Graphics2D g2d, Rectangle plot, Scale scale) {
+        var barCount = Math.min(keyPointCount, Math.max(plot.width / MIN_BAR_WIDTH, 1));
+        // With too many points for a bar each, each bar shows the highest point of the ones it covers.
+        var values = barCount == keyPointCount ? keyPoints : downsample(keyPoints, keyPointCount, barCount).highest;
+        var baseline = scale.toY(Math.max(scale.lowest, 0));
+
+        for (var i = 0; i < barCount; i++) {
+            var left = plot.x + plot.width * i / barCount;
+            var right = plot.x + plot.width * (i + 1) / barCount;
+            var top = scale.toY(values[i]);
+
+            var y = (int) Math.round(Math.min(top, baseline));
+            var barHeight = (int) Math.round(Math.abs(baseline - top));
+
+            g2d.fillRect(left, y, Math.max(right - left - 1, 1), Math.max(barHeight, 1));
+        }
+    }
+
+    private record Scale(Rectangle plot, double lowest, double highest) {
+        double toY(double value) {
+            return plot.y + plot.height - (value - lowest) / (highest - lowest) * plot.height;
+        }
+    }
+
+    private record Buckets(double[] lowest, double[] highest) {}
+
+    // Splits the points into evenly sized buckets, keeping the lowest and highest point of each one.
+    private static Buckets downsample(double[] points, int count, int bucketCount) {
+        var lowest = new double[bucketCount];
+        var highest = new double[bucketCount];
+
+        for (var bucket = 0; bucket < bucketCount; bucket++) {
+            var start = (int) ((long) count * bucket / bucketCount);
+            var end = Math.max((int) ((long) count * (bucket + 1) / bucketCount), start + 1);
+
+            lowest[bucket] = points[start];
+            highest[bucket] = points[start];
+
+            for (var i = start + 1; i < end; i++) {
+                lowest[bucket] = Math.min(lowest[bucket], points[i]);
+                highest[bucket] = Math.max(highest[bucket], points[i]);
+            }
+        }
+
+        return new Buckets(lowest, highest);
+    }
 }
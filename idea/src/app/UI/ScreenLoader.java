@@ -0,0 +1,90 @@
+package app.ui;
+
+import app.util.Utils;
+
+import javax.swing.*;
+import java.awt.*;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+// Gathers the data for part of a screen in the background, so that the window doesn't freeze while it's worked out.
+// A "Loading..." placeholder is shown in the container until the data is ready, at which point it is replaced with
+// whatever the view adds. Loads are cancelled when the screen is left (see Main.reset), and starting another load
+// into the same container cancels the one before it, so a slow load can never show up on the wrong screen.
+// Like the rest of the UI code, this should only be used from the EDT.
+public class ScreenLoader {
+    private static final ScreenLoader instance = new ScreenLoader();
+
+    public static ScreenLoader getInstance() {
+        return instance;
+    }
+
+    // Loads are mostly waiting on locks and files, so there's no need to limit how many run at once.
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    // Loads that haven't finished yet, by the container they're loading into.
+    private final Map<Container, SwingWorker<?, ?>> pending = new HashMap<>();
+
+    private ScreenLoader() {}
+
+    // The loader is run in the background and must not touch any components. The view is then run on the EDT with
+    // what it returned, after the container has been emptied.
+    public <T> void load(Container container, Supplier<T> loader, Consumer<T> view) {
+        var previous = pending.remove(container);
+        if (previous != null)
+            previous.cancel(true);
+
+        container.removeAll();
+        container.add(Utils.make(new JLabel("Loading..."), label -> {
+            label.setForeground(Color.GRAY);
+        }));
+        container.revalidate();
+        container.repaint();
+
+        var worker = new SwingWorker<T, Void>() {
+            @Override
+            protected T doInBackground() {
+                return loader.get();
+            }
+
+            @Override
+            protected void done() {
+                // Cancelled, or another load has been started into the same container since.
+                if (pending.get(container) != this)
+                    return;
+
+                pending.remove(container);
+                container.removeAll();
+
+                try {
+                    view.accept(this.get());
+                } catch (CancellationException | InterruptedException e) {
+                    return;
+                } catch (ExecutionException e) {
+                    e.getCause().printStackTrace();
+
+                    container.add(Utils.make(new JLabel("Failed to load: " + e.getCause().getMessage()), label -> {
+                        label.setForeground(Color.RED);
+                    }));
+                }
+
+                container.revalidate();
+                container.repaint();
+            }
+        };
+
+        pending.put(container, worker);
+        executor.execute(worker);
+    }
+
+    // Cancels every load that hasn't finished yet, such as when the screen they were for is being left.
+    public void cancelAll() {
+        pending.values().forEach(worker -> worker.cancel(true));
+        pending.clear();
+    }
+}
@@ -6,11 +6,9 @@ import app.auth.AuthManager;
 import app.util.ColorUtils;
 import app.util.Utils;
 
-import javax.imageio.ImageIO;
 import javax.swing.*;
 import java.awt.*;
 import java.awt.event.ActionListener;
-import java.io.IOException;
 
 public class SharedScreens {
     // Account Details screen
@@ -39,13 +37,7 @@ public class SharedScreens {
             var panel = new JPanel();
             panel.setOpaque(false);
 
-            try {
-                var image = Utils.getCircularImage(ImageIO.read(Main.class.getResourceAsStream("/images/profile.png")))
-                    .getScaledInstance(128, 128, Image.SCALE_SMOOTH);
-                panel.add(new JLabel(new ImageIcon(image)));
-            } catch (IOException e) {
-                throw new RuntimeException(e);
-            }
+            panel.add(new JLabel(new ImageIcon(Utils.getCircularImage("profile.png", 128, 128))));
 
             mainPanel.add(panel);
         }
@@ -99,10 +91,14 @@ public class SharedScreens {
                     button.setEnabled(false);
 
                     button.addActionListener(e -> {
-                        account.setEmail(email.getText());
-                        account.setDisplayName(displayName.getText());
+                        try {
+                            authManager.changeEmail(account, email.getText());
+                        } catch (IllegalArgumentException exception) {
+                            JOptionPane.showMessageDialog(Main.getFrame(), exception.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+                            return;
+                        }
 
-                        authManager.save();
+                        authManager.changeDisplayName(account, displayName.getText());
                     });
 
                     var changeEvent = (ActionListener) e -> {
@@ -181,13 +177,7 @@ public class SharedScreens {
             var panel = new JPanel();
             panel.setOpaque(false);
 
-            try {
-                var image = Utils.getCircularImage(ImageIO.read(Main.class.getResourceAsStream("/images/profile.png")))
-                    .getScaledInstance(128, 128, Image.SCALE_SMOOTH);
-                panel.add(new JLabel(new ImageIcon(image)));
-            } catch (IOException e) {
-                throw new RuntimeException(e);
-            }
+            panel.add(new JLabel(new ImageIcon(Utils.getCircularImage("profile.png", 128, 128))));
 
             mainPanel.add(panel);
         }
@@ -0,0 +1,157 @@
+package app.ui;
+
+import javax.swing.*;
+import javax.swing.event.ChangeListener;
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+// A scrollable list of fixed-height rows, which only builds the rows that are actually in view. Rows are built as
+// they're scrolled into view and thrown away once they're scrolled back out, so a list of thousands of items costs
+// about as much to show as a screenful of them. Lists that are loaded a page at a time can add more rows once the
+// end of the list comes into view, with setEndReachedListener and addRows.
+public class VirtualListPanel<T> extends ScrollablePanel {
+    // Rows just outside the view are built too, so they're ready before they scroll in.
+    private static final int OVERSCAN_ROWS = 2;
+
+    private final int rowWidth;
+    private final int rowHeight;
+    private final Map<Integer, JComponent> builtRows = new HashMap<>();
+    private final ChangeListener viewportListener = e -> this.updateRows();
+
+    private final List<T> items = new ArrayList<>();
+    private Function<T, JComponent> rowFactory;
+    private JComponent placeholder;
+    private JViewport viewport;
+    private Runnable endReachedListener;
+    // Set while waiting on the end reached listener, so it isn't called again for every scroll until it adds rows.
+    private boolean endReached = false;
+
+    public VirtualListPanel(int rowWidth, int rowHeight) {
+        this.rowWidth = rowWidth;
+        this.rowHeight = rowHeight;
+
+        this.setLayout(null);
+    }
+
+    public void setRows(List<? extends T> items, Function<T, JComponent> rowFactory) {
+        this.items.clear();
+        this.items.addAll(items);
+        this.rowFactory = rowFactory;
+        this.endReached = false;
+
+        builtRows.values().forEach(this::remove);
+        builtRows.clear();
+
+        this.revalidate();
+        this.updateRows();
+    }
+
+    public void addRows(List<? extends T> items) {
+        this.items.addAll(items);
+        this.endReached = false;
+
+        this.revalidate();
+        this.updateRows();
+    }
+
+    // Called once the last row is built, so that the next page can be added. If it doesn't add any rows (such as when
+    // there are no more pages), it won't be called again until rows are added some other way.
+    public void setEndReachedListener(Runnable endReachedListener) {
+        this.endReachedListener = endReachedListener;
+    }
+
+    // Shown instead of the rows when there aren't any.
+    public void setPlaceholder(JComponent placeholder) {
+        if (this.placeholder != null)
+            this.remove(this.placeholder);
+
+        this.placeholder = placeholder;
+        this.add(placeholder);
+        this.revalidate();
+    }
+
+    @Override
+    public void addNotify() {
+        super.addNotify();
+
+        if (this.getParent() instanceof JViewport parent) {
+            viewport = parent;
+            viewport.addChangeListener(viewportListener);
+        }
+
+        this.updateRows();
+    }
+
+    @Override
+    public void removeNotify() {
+        if (viewport != null) {
+            viewport.removeChangeListener(viewportListener);
+            viewport = null;
+        }
+
+        super.removeNotify();
+    }
+
+    @Override
+    public Dimension getPreferredSize() {
+        var height = items.isEmpty() && placeholder != null ? placeholder.getPreferredSize().height : items.size() * rowHeight;
+        return new Dimension(rowWidth, height);
+    }
+
+    @Override
+    public void doLayout() {
+        var x = Math.max((this.getWidth() - rowWidth) / 2, 0);
+
+        builtRows.forEach((index, row) -> row.setBounds(x, index * rowHeight, rowWidth, rowHeight));
+
+        if (placeholder != null) {
+            placeholder.setVisible(items.isEmpty());
+            placeholder.setBounds(0, 0, this.getWidth(), placeholder.getPreferredSize().height);
+        }
+    }
+
+    private void updateRows() {
+        if (rowFactory == null)
+            return;
+
+        var visible = this.getVisibleRect();
+        // Before being shown there's nothing visible yet, so build enough rows to fill the view once it is.
+        var visibleHeight = visible.height > 0 ? visible.height : (viewport != null ? viewport.getHeight() : 0);
+
+        var first = Math.max(visible.y / rowHeight - OVERSCAN_ROWS, 0);
+        var last = Math.min((visible.y + visibleHeight) / rowHeight + OVERSCAN_ROWS, items.size() - 1);
+
+        var changed = builtRows.entrySet().removeIf(entry -> {
+            if (entry.getKey() >= first && entry.getKey() <= last)
+                return false;
+
+            this.remove(entry.getValue());
+            return true;
+        });
+
+        for (var i = first; i <= last; i++) {
+            if (builtRows.containsKey(i))
+                continue;
+
+            var row = rowFactory.apply(items.get(i));
+            builtRows.put(i, row);
+            this.add(row);
+            changed = true;
+        }
+
+        if (changed) {
+            this.revalidate();
+            this.repaint();
+        }
+
+        if (endReachedListener != null && !endReached && builtRows.containsKey(items.size() - 1)) {
+            endReached = true;
+            // Not while we're in the middle of updating the rows, as the listener is going to add more of them.
+            SwingUtilities.invokeLater(endReachedListener);
+        }
+    }
+}
@@ -8,8 +8,10 @@ import app.product.*;
 import app.seller.Seller;
 import app.ui.ComponentHelper;
 import app.ui.MultilineTextLabel;
+import app.ui.ScreenLoader;
 import app.ui.ScrollablePanel;
 import app.ui.SharedScreens;
+import app.ui.VirtualListPanel;
 import app.util.ColorUtils;
 import app.util.Utils;
 
@@ -20,14 +22,10 @@ import javax.swing.border.LineBorder;
 import java.awt.*;
 import java.awt.event.ItemEvent;
 import java.awt.font.TextAttribute;
-import java.time.Instant;
-import java.time.YearMonth;
-import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.concurrent.atomic.AtomicReference;
 
 public class AdminViews {
     private static final int PANEL_WIDTH = 775;
@@ -49,117 +47,91 @@ public class AdminViews {
 
         {
             var formatter = DateTimeFormatter.ofPattern("MMM uuuu", Locale.US);
-            var monthlyOrders = new HashMap<YearMonth, List<Order>>(); // (Month, Year) -> [orders]
-
-            for (Order order : OrderManager.getInstance().getAllOrders()) {
-                // Ignore orders with pending or failed payment statuses
-                if (order.getPaymentStatus() == PaymentStatus.PENDING || order.getPaymentStatus() == PaymentStatus.FAILED)
-                    continue;
-
-                var yearMonth = YearMonth.from(
-                    Instant.ofEpochMilli(order.getOrderTimestamp())
-                        .atZone(ZoneId.systemDefault())
-                        .toLocalDate()
-                );
-                var ordersList = monthlyOrders.computeIfAbsent(yearMonth, $ -> new ArrayList<>());
-                ordersList.add(order);
-            }
-
-            var sortedMonths = monthlyOrders.keySet().stream()
-                .sorted(Comparator.reverseOrder())
-                .toList();
-
-            var monthsList = new JComboBox<>(sortedMonths.stream().map(formatter::format).toArray());
-            secondPanel.add(monthsList);
-
-            var statsPanel = new JPanel();
-            statsPanel.setOpaque(false);
+            // Only orders that have been paid for are counted, and the totals are kept up to date by OrderManager.
+            var revenueStats = OrderManager.getInstance().getRevenueStats();
 
-            var createStatsPanel = (Runnable) () -> {
-                statsPanel.removeAll();
+            ScreenLoader.getInstance().load(secondPanel, revenueStats::getMonths, sortedMonths -> {
+                var monthsList = new JComboBox<>(sortedMonths.stream().map(formatter::format).toArray());
+                secondPanel.add(monthsList);
 
-                var grossEarnings = new AtomicReference<Double>();
-
-                var scrollableList = new JScrollPane(Utils.make(new ScrollablePanel(), scrollable -> {
-                    scrollable.setLayout(new BoxLayout(scrollable, BoxLayout.Y_AXIS));
+                var statsPanel = new JPanel();
+                statsPanel.setOpaque(false);
 
+                var createStatsPanel = (Runnable) () -> {
                     var yearMonth = sortedMonths.get(monthsList.getSelectedIndex());
-                    var orders = monthlyOrders.get(yearMonth);
-
-                    scrollable.setOpaque(false);
-
-                    var grossEarningsDouble = 0.0;
 
-                    for (Order order : orders.reversed()) {
-                        var panel = new JPanel(new FlowLayout(FlowLayout.LEFT));
-
-                        panel.setPreferredSize(new Dimension(PANEL_WIDTH  - 2, 60));
-                        panel.setMaximumSize(new Dimension(PANEL_WIDTH  - 2, 60));
-                        panel.setBackground(ColorUtils.fromHex(0x0047D6));
-                        panel.setBorder(new LineBorder(Color.BLACK, 1, true));
-
-                        var infoPanel = new JPanel();
-                        infoPanel.setOpaque(false);
-                        infoPanel.setLayout(new BoxLayout(infoPanel, BoxLayout.Y_AXIS));
-                        infoPanel.add(new JLabel("Order #" + order.getOrderId()));
-                        infoPanel.add(new JLabel("Total Earned: " + Utils.formatCurrency(order.getTotalCost())));
-                        infoPanel.add(new JLabel("Ordered at " + Utils.getDateTimeString(order.getOrderTimestamp())));
-
-                        grossEarningsDouble += order.getTotalCost();
-
-                        panel.add(infoPanel);
-
-                        var scrollPane = new JScrollPane(Utils.make(new ScrollablePanel(), pane -> {
-                            pane.setOpaque(false);
-                            pane.setBorder(new EmptyBorder(0, 2, 2, 2));
-                            pane.setForeground(Color.WHITE);
-
-                            order.getProducts().forEach((barcode, amount) -> {
-                                var product = ProductManager.getInstance().getProduct(barcode);
-                                pane.add(new JLabel(amount + "x - " + product.getName()));
-                            });
+                    // Switching months quickly cancels the load for the month that was switched away from.
+                    ScreenLoader.getInstance().load(statsPanel, () -> revenueStats.getOrders(yearMonth), orders -> {
+                        var scrollableList = new JScrollPane(Utils.make(new ScrollablePanel(), scrollable -> {
+                            scrollable.setLayout(new BoxLayout(scrollable, BoxLayout.Y_AXIS));
+
+                            scrollable.setOpaque(false);
+
+                            for (Order order : orders.reversed()) {
+                                var panel = new JPanel(new FlowLayout(FlowLayout.LEFT));
+
+                                panel.setPreferredSize(new Dimension(PANEL_WIDTH  - 2, 60));
+                                panel.setMaximumSize(new Dimension(PANEL_WIDTH  - 2, 60));
+                                panel.setBackground(ColorUtils.fromHex(0x0047D6));
+                                panel.setBorder(new LineBorder(Color.BLACK, 1, true));
+
+                                var infoPanel = new JPanel();
+                                infoPanel.setOpaque(false);
+                                infoPanel.setLayout(new BoxLayout(infoPanel, BoxLayout.Y_AXIS));
+                                infoPanel.add(new JLabel("Order #" + order.getOrderId()));
+                                infoPanel.add(new JLabel("Total Earned: " + Utils.formatCurrency(order.getTotalCost())));
+                                infoPanel.add(new JLabel("Ordered at " + Utils.getDateTimeString(order.getOrderTimestamp())));
+
+                                panel.add(infoPanel);
+
+                                var scrollPane = new JScrollPane(Utils.make(new ScrollablePanel(), pane -> {
+                                    pane.setOpaque(false);
+                                    pane.setBorder(new EmptyBorder(0, 2, 2, 2));
+                                    pane.setForeground(Color.WHITE);
+
+                                    for (OrderLine line : order.getLines()) {
+                                        pane.add(new JLabel(line.quantity() + "x - " + line.name()));
+                                    }
+                                }));
+                                scrollPane.setBorder(new CompoundBorder(
+                                    new EmptyBorder(0, 3, 2, 3),
+                                    new LineBorder(new Color(0f, 0f, 0f, 0.45f), 1)
+                                ));
+                                scrollPane.getViewport().setBackground(new Color(0f, 0f, 0f, 0.2f));
+                                scrollPane.setOpaque(false);
+                                scrollPane.setPreferredSize(new Dimension(400, 50));
+                                scrollPane.setHorizontalScrollBarPolicy(JScrollPane.HORIZONTAL_SCROLLBAR_NEVER);
+                                scrollPane.setVerticalScrollBarPolicy(JScrollPane.VERTICAL_SCROLLBAR_AS_NEEDED);
+
+                                panel.add(scrollPane);
+
+                                scrollable.add(panel);
+                            }
                         }));
-                        scrollPane.setBorder(new CompoundBorder(
-                            new EmptyBorder(0, 3, 2, 3),
-                            new LineBorder(new Color(0f, 0f, 0f, 0.45f), 1)
-                        ));
-                        scrollPane.getViewport().setBackground(new Color(0f, 0f, 0f, 0.2f));
-                        scrollPane.setOpaque(false);
-                        scrollPane.setPreferredSize(new Dimension(400, 50));
-                        scrollPane.setHorizontalScrollBarPolicy(JScrollPane.HORIZONTAL_SCROLLBAR_NEVER);
-                        scrollPane.setVerticalScrollBarPolicy(JScrollPane.VERTICAL_SCROLLBAR_AS_NEEDED);
-
-                        panel.add(scrollPane);
-
-                        scrollable.add(panel);
-                    }
 
-                    grossEarnings.set(grossEarningsDouble);
-                }));
-
-                scrollableList.setOpaque(false);
-                scrollableList.setPreferredSize(new Dimension(PANEL_WIDTH, 650));
-                scrollableList.setHorizontalScrollBarPolicy(ScrollPaneConstants.HORIZONTAL_SCROLLBAR_NEVER);
-                scrollableList.setVerticalScrollBarPolicy(ScrollPaneConstants.VERTICAL_SCROLLBAR_AS_NEEDED);
+                        scrollableList.setOpaque(false);
+                        scrollableList.setPreferredSize(new Dimension(PANEL_WIDTH, 650));
+                        scrollableList.setHorizontalScrollBarPolicy(ScrollPaneConstants.HORIZONTAL_SCROLLBAR_NEVER);
+                        scrollableList.setVerticalScrollBarPolicy(ScrollPaneConstants.VERTICAL_SCROLLBAR_AS_NEEDED);
 
-                statsPanel.add(scrollableList);
+                        statsPanel.add(scrollableList);
 
-                statsPanel.add(new JLabel("Gross Earnings: " + Utils.formatCurrency(grossEarnings.get())));
+                        statsPanel.add(new JLabel("Gross Earnings: " + Utils.formatCurrency(revenueStats.getMonthlyTotal(yearMonth))));
+                    });
+                };
 
-                statsPanel.repaint();
-            };
+                secondPanel.add(statsPanel);
 
-            secondPanel.add(statsPanel);
+                monthsList.addItemListener(e -> {
+                    createStatsPanel.run();
+                });
 
-            monthsList.addItemListener(e -> {
-                createStatsPanel.run();
+                if (!sortedMonths.isEmpty()) {
+                    createStatsPanel.run();
+                } else {
+                    secondPanel.add(new JLabel("No orders available!"));
+                }
             });
-
-            if (!monthlyOrders.isEmpty()) {
-                createStatsPanel.run();
-            } else {
-                secondPanel.add(new JLabel("No orders available!"));
-            }
         }
 
         mainPanel.add(secondPanel);
@@ -284,8 +256,7 @@ public class AdminViews {
         secondPanel.setOpaque(false);
 
         {
-            var contentPanel = new ScrollablePanel();
-            contentPanel.setLayout(new BoxLayout(contentPanel, BoxLayout.Y_AXIS));
+            var contentPanel = new VirtualListPanel<Product>(PANEL_WIDTH - 2, 80);
             contentPanel.setOpaque(false);
 
             var mainScrollPane = new JScrollPane(contentPanel);
@@ -296,7 +267,7 @@ public class AdminViews {
             mainScrollPane.setHorizontalScrollBarPolicy(ScrollPaneConstants.HORIZONTAL_SCROLLBAR_NEVER);
             mainScrollPane.setVerticalScrollBarPolicy(ScrollPaneConstants.VERTICAL_SCROLLBAR_NEVER);
 
-            for (Product product : ProductManager.getInstance().products()) {
+            contentPanel.setRows(ProductManager.getInstance().getProductsSnapshot(), product -> {
                 var panel = new JPanel(new FlowLayout(FlowLayout.LEFT));
 
                 panel.setPreferredSize(new Dimension(PANEL_WIDTH - 2, 80));
@@ -314,7 +285,7 @@ public class AdminViews {
                     box.addItemListener(e -> {
                         if (e.getStateChange() == ItemEvent.SELECTED) {
                             product.setCategory((ProductCategory) e.getItem());
-                            ProductManager.getInstance().save();
+                            ProductManager.getInstance().updateProduct(product);
                         }
                     });
                 }));
@@ -367,8 +338,8 @@ public class AdminViews {
 
                 panel.add(numbersPanel);
 
-                contentPanel.add(panel);
-            }
+                return panel;
+            });
 
             mainPanel.add(mainScrollPane);
         }
@@ -400,7 +371,7 @@ public class AdminViews {
             )));
         }
 
-        sidebar.add(Utils.make(new JButton(account.getDisplayName(), new ImageIcon(Utils.getCircularImage(Utils.resizeImage("profile.png", 24, 24)))), button -> {
+        sidebar.add(Utils.make(new JButton(account.getDisplayName(), new ImageIcon(Utils.getCircularImage("profile.png", 24, 24))), button -> {
             button.setOpaque(false);
             button.setToolTipText("View Account Details");
 
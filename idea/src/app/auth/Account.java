@@ -1,9 +1,9 @@
 package app.auth;
 
 import app.util.Utils;
-import app.util.data.DataSerializer;
-import app.util.data.DataSerializers;
+import app.util.data.*;
 
+import java.io.IOException;
 import java.util.UUID;
 
 public class Account {
@@ -53,7 +53,7 @@ public class Account {
         this.passwordHash = passwordHash;
     }
 
-    public static class Serializer extends DataSerializer<Account> {
+    public static class Serializer extends BinaryDataSerializer<Account> {
         public Serializer() {
             super(Account.class);
         }
@@ -65,8 +65,22 @@ public class Account {
 
         @Override
         public Account deserialize(String data) {
-            var split = DataSerializers.readSegmentedLine(data);
-            return new Account(AccountType.valueOf(split.get(0)), UUID.fromString(split.get(1)), split.get(2), split.get(3), split.get(4));
+            var cursor = new SegmentCursor(data);
+            return new Account(cursor.nextEnum(AccountType.class), cursor.nextUUID(), cursor.nextString(), cursor.nextString(), cursor.nextString());
+        }
+
+        @Override
+        public void writeBinary(BinaryDataOutput output, Account value) throws IOException {
+            output.writeEnum(value.getAccountType());
+            output.writeUUID(value.getUUID());
+            output.writeString(value.getEmail());
+            output.writeString(value.getDisplayName());
+            output.writeString(value.getPasswordHash());
+        }
+
+        @Override
+        public Account readBinary(BinaryDataInput input) throws IOException {
+            return new Account(input.readEnum(AccountType.class), input.readUUID(), input.readString(), input.readString(), input.readString());
         }
     }
 
@@ -1,9 +1,9 @@
 package app.auth;
 
 import app.util.Utils;
-import app.util.data.DataSerializer;
-import app.util.data.DataSerializers;
+import app.util.data.*;
 
+import java.io.IOException;
 import java.util.UUID;
 
 public record AuthLog(
@@ -24,7 +24,7 @@ public record AuthLog(
         CHANGE_DISPLAY_NAME
     }
 
-    public static class Serializer extends DataSerializer<AuthLog> {
+    public static class Serializer extends BinaryDataSerializer<AuthLog> {
         public Serializer() {
             super(AuthLog.class);
         }
@@ -36,9 +36,22 @@ public record AuthLog(
 
         @Override
         public AuthLog deserialize(String data) {
-            var split = DataSerializers.readSegmentedLine(data);
+            var cursor = new SegmentCursor(data);
 
-            return new AuthLog(UUID.fromString(split.get(0)), Type.valueOf(split.get(1)), Long.parseLong(split.get(2)), split.get(3));
+            return new AuthLog(cursor.nextUUID(), cursor.nextEnum(Type.class), cursor.nextLong(), cursor.nextString());
+        }
+
+        @Override
+        public void writeBinary(BinaryDataOutput output, AuthLog value) throws IOException {
+            output.writeUUID(value.uuid());
+            output.writeEnum(value.type());
+            output.writeVarLong(value.timestamp());
+            output.writeString(value.extraData());
+        }
+
+        @Override
+        public AuthLog readBinary(BinaryDataInput input) throws IOException {
+            return new AuthLog(input.readUUID(), input.readEnum(Type.class), input.readVarLong(), input.readString());
         }
     }
 
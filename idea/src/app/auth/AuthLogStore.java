@@ -0,0 +1,291 @@
+package app.auth;
+
+import app.util.data.DataSerializers;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.time.*;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+// Stores auth logs split into a file per day or month (in UTC), inside a directory for each account type.
+// Queries for a time range only need to read the segments covering that range, and old segments can be dropped
+// by setting a retention period, so neither query time nor disk usage keeps growing with the total history.
+// Each segment also has a small .accounts file next to it, listing the accounts with logs in that segment, so that
+// looking up a single account's logs only has to open the segments which actually have some.
+public class AuthLogStore {
+    public enum Partitioning {
+        DAILY,
+        MONTHLY
+    }
+
+    private static final String SEGMENT_EXTENSION = ".txt";
+    private static final String ACCOUNTS_EXTENSION = ".accounts";
+    private static final DateTimeFormatter DAILY_FORMAT = DateTimeFormatter.ofPattern("uuuu-MM-dd");
+    private static final DateTimeFormatter MONTHLY_FORMAT = DateTimeFormatter.ofPattern("uuuu-MM");
+
+    private final File directory;
+    private final Partitioning partitioning;
+    // How long to keep logs around for, or null to keep them forever.
+    private Duration retention = null;
+
+    // Reads hold the read lock, and anything deleting or rewriting whole segments holds the write lock, so a segment
+    // can't be deleted out from under a query that's reading it.
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    // The accounts in each segment, loaded from its .accounts file the first time it's needed.
+    private final Map<File, Set<UUID>> segmentAccounts = new HashMap<>();
+
+    public AuthLogStore(File directory, Partitioning partitioning) {
+        this.directory = directory;
+        this.partitioning = partitioning;
+    }
+
+    public void setRetention(Duration retention) {
+        lock.writeLock().lock();
+        try {
+            this.retention = retention;
+            this.applyRetention();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public File getSegmentFile(long timestamp) {
+        var date = Instant.ofEpochMilli(timestamp).atZone(ZoneOffset.UTC).toLocalDate();
+        var name = partitioning == Partitioning.DAILY ? DAILY_FORMAT.format(date) : MONTHLY_FORMAT.format(YearMonth.from(date));
+
+        return new File(directory, name + SEGMENT_EXTENSION);
+    }
+
+    public void ensureDirectory() {
+        if (!directory.exists() && !directory.mkdirs())
+            throw new IllegalStateException("Failed to create auth log directory " + directory.getPath());
+    }
+
+    // Reads every log between the two timestamps (inclusive), only opening the segments which overlap that range.
+    public void forEachLog(long from, long to, Consumer<AuthLog> consumer) {
+        this.forEachLog(null, from, to, consumer);
+    }
+
+    // The same, but only for one account (or every account if it is null). Segments without any of the account's
+    // logs are skipped without being opened.
+    public void forEachLog(UUID account, long from, long to, Consumer<AuthLog> consumer) {
+        lock.readLock().lock();
+        try {
+            for (Segment segment : this.getSegments()) {
+                if (segment.end() <= from || segment.start() > to)
+                    continue;
+
+                if (account != null && !this.hasAccount(segment.file(), account))
+                    continue;
+
+                DataSerializers.deserializeLines(AuthLog.class, segment.file(), log -> {
+                    if (log.timestamp() >= from && log.timestamp() <= to && (account == null || account.equals(log.uuid())))
+                        consumer.accept(log);
+                });
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Adds the logs onto the end of the segment, which must be the one their timestamps belong in. Either all of them
+    // are written or none are (see DataSerializers.appendValues). Holds the write lock, so a query never reads half of
+    // an append.
+    public void append(File segmentFile, List<AuthLog> logs) throws IOException {
+        lock.writeLock().lock();
+        try {
+            this.recordAccounts(segmentFile, logs.stream().map(AuthLog::uuid).toList());
+            DataSerializers.appendValues(AuthLog.class, segmentFile, logs);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Must be called before appending logs for these accounts to the segment. Recording them first means a crash in
+    // between can only leave an account listed without any logs, which just costs a wasted read.
+    private void recordAccounts(File segmentFile, Collection<UUID> accounts) throws IOException {
+        synchronized (segmentAccounts) {
+            var known = this.getAccounts(segmentFile);
+            var added = new LinkedHashSet<UUID>();
+
+            for (UUID account : accounts) {
+                if (!known.contains(account))
+                    added.add(account);
+            }
+
+            if (added.isEmpty())
+                return;
+
+            var lines = new StringBuilder();
+            added.forEach(account -> lines.append(account).append('\n'));
+
+            Files.writeString(getAccountsFile(segmentFile).toPath(), lines, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            // Only once they're actually in the file, so a failed write is tried again with the batch.
+            known.addAll(added);
+        }
+    }
+
+    // Deletes every segment which only holds logs older than the retention period.
+    public void applyRetention() {
+        lock.writeLock().lock();
+        try {
+            if (retention == null)
+                return;
+
+            var cutoff = System.currentTimeMillis() - retention.toMillis();
+
+            for (Segment segment : this.getSegments()) {
+                if (segment.end() > cutoff)
+                    continue;
+
+                if (!segment.file().delete()) {
+                    System.err.println("Failed to delete expired auth log segment " + segment.file().getPath());
+                    continue;
+                }
+
+                this.forgetAccounts(segment.file());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Auth logs used to all be kept in a single file, so split that up into segments. Each segment is appended to in
+    // one go, and logs already in it are skipped, so if we stop partway through (before the legacy file is moved aside),
+    // migrating again next time won't write any log twice.
+    public void migrate(File legacyFile) {
+        if (!legacyFile.exists())
+            return;
+
+        lock.writeLock().lock();
+        try {
+            this.ensureDirectory();
+
+            var segments = new TreeMap<File, List<AuthLog>>();
+            DataSerializers.deserializeLines(AuthLog.class, legacyFile, log -> {
+                segments.computeIfAbsent(this.getSegmentFile(log.timestamp()), $ -> new ArrayList<>()).add(log);
+            });
+
+            segments.forEach((file, logs) -> {
+                var existing = new HashSet<AuthLog>();
+                if (file.exists())
+                    DataSerializers.deserializeLines(AuthLog.class, file, existing::add);
+
+                var missing = logs.stream().filter(log -> !existing.contains(log)).toList();
+                if (missing.isEmpty())
+                    return;
+
+                // Dropped before the segment changes, so it's rebuilt from the segment rather than being left out of date.
+                this.forgetAccounts(file);
+                DataSerializers.appendValues(AuthLog.class, file, missing);
+            });
+
+            if (!legacyFile.renameTo(new File(legacyFile.getPath() + ".migrated")))
+                throw new IllegalStateException("Failed to move aside " + legacyFile.getName() + " after migrating it!");
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private boolean hasAccount(File segmentFile, UUID account) {
+        synchronized (segmentAccounts) {
+            return this.getAccounts(segmentFile).contains(account);
+        }
+    }
+
+    // Segments written before .accounts files existed (or whose .accounts file was lost) have it rebuilt on first use.
+    // The set is the cached one, which recordAccounts adds to, so it must only be used while synchronized on
+    // segmentAccounts.
+    private Set<UUID> getAccounts(File segmentFile) {
+        synchronized (segmentAccounts) {
+            var accounts = segmentAccounts.get(segmentFile);
+            if (accounts != null)
+                return accounts;
+
+            var accountsFile = getAccountsFile(segmentFile);
+            var loaded = new HashSet<UUID>();
+
+            try {
+                if (accountsFile.exists()) {
+                    for (String line : Files.readAllLines(accountsFile.toPath(), StandardCharsets.UTF_8)) {
+                        try {
+                            loaded.add(UUID.fromString(line.trim()));
+                        } catch (IllegalArgumentException e) {
+                            // A line cut off by a crash, whose logs were never written anyway.
+                        }
+                    }
+                } else if (segmentFile.exists()) {
+                    DataSerializers.deserializeLines(AuthLog.class, segmentFile, log -> loaded.add(log.uuid()));
+
+                    var lines = new StringBuilder();
+                    loaded.forEach(account -> lines.append(account).append('\n'));
+
+                    DataSerializers.writeAtomically(accountsFile, stream -> stream.write(lines.toString().getBytes(StandardCharsets.UTF_8)));
+                }
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+
+            segmentAccounts.put(segmentFile, loaded);
+            return loaded;
+        }
+    }
+
+    private void forgetAccounts(File segmentFile) {
+        synchronized (segmentAccounts) {
+            segmentAccounts.remove(segmentFile);
+            getAccountsFile(segmentFile).delete();
+        }
+    }
+
+    private static File getAccountsFile(File segmentFile) {
+        var name = segmentFile.getName();
+        return new File(segmentFile.getParentFile(), name.substring(0, name.length() - SEGMENT_EXTENSION.length()) + ACCOUNTS_EXTENSION);
+    }
+
+    private List<Segment> getSegments() {
+        var files = directory.listFiles((dir, name) -> name.endsWith(SEGMENT_EXTENSION));
+        if (files == null)
+            return List.of();
+
+        var segments = new ArrayList<Segment>();
+
+        for (File file : files) {
+            var name = file.getName().substring(0, file.getName().length() - SEGMENT_EXTENSION.length());
+
+            try {
+                LocalDate start;
+                LocalDate end;
+
+                if (partitioning == Partitioning.DAILY) {
+                    start = LocalDate.parse(name, DAILY_FORMAT);
+                    end = start.plusDays(1);
+                } else {
+                    start = YearMonth.parse(name, MONTHLY_FORMAT).atDay(1);
+                    end = start.plusMonths(1);
+                }
+
+                segments.add(new Segment(file, toMillis(start), toMillis(end)));
+            } catch (DateTimeParseException e) {
+                // Not one of our segments, so leave it alone.
+            }
+        }
+
+        segments.sort(Comparator.comparingLong(Segment::start));
+        return segments;
+    }
+
+    private static long toMillis(LocalDate date) {
+        return date.atStartOfDay(ZoneOffset.UTC).toInstant().toEpochMilli();
+    }
+
+    // A segment file, holding the logs from start (inclusive) up to end (exclusive).
+    private record Segment(File file, long start, long end) {}
+}
@@ -0,0 +1,139 @@
+package app.auth;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+// Appends auth logs onto the end of their log segment from a background thread, instead of rewriting the file for every login.
+// Logs that come in while a batch is being written are grouped together into the next batch, so a burst of logins
+// only costs a single write and sync rather than one per login.
+public class AuthLogWriter {
+    // How long to wait for more logs to come in before writing a batch.
+    private static final long GROUP_COMMIT_WINDOW_MS = 5;
+    private static final int MAX_BATCH_SIZE = 4096;
+    private static final long SHUTDOWN_FLUSH_TIMEOUT_MS = 5000;
+    // How long flush() waits for the writer, so a disk that keeps failing can't hang whoever is reading the logs.
+    private static final long FLUSH_TIMEOUT_MS = 2000;
+    // A failed batch is tried again after this long, doubling each time it fails again up to the max.
+    private static final long INITIAL_RETRY_DELAY_MS = 50;
+    private static final long MAX_RETRY_DELAY_MS = 5000;
+
+    private final AuthLogStore store;
+    private final LinkedBlockingQueue<AuthLog> queue = new LinkedBlockingQueue<>();
+
+    // Used for flush(), to know once everything submitted so far has been written.
+    private long submitted = 0;
+    private long written = 0;
+
+    public AuthLogWriter(AuthLogStore store, String name) {
+        this.store = store;
+
+        var thread = new Thread(this::run, "Auth Log Writer (" + name + ")");
+        thread.setDaemon(true);
+        thread.start();
+
+        // Give any logs still in the queue a chance to be written before exiting.
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> this.flush(SHUTDOWN_FLUSH_TIMEOUT_MS)));
+    }
+
+    public synchronized void append(AuthLog log) {
+        submitted++;
+        queue.add(log);
+    }
+
+    // Blocks until every log appended so far has been written to disk, or until FLUSH_TIMEOUT_MS has passed if the
+    // writer is stuck retrying a failed write. Returns whether everything was written.
+    public boolean flush() {
+        return this.flush(FLUSH_TIMEOUT_MS);
+    }
+
+    private synchronized boolean flush(long timeoutMs) {
+        var target = submitted;
+        var deadline = System.currentTimeMillis() + timeoutMs;
+
+        try {
+            while (written < target) {
+                var remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0)
+                    return false;
+
+                this.wait(remaining);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+
+        return true;
+    }
+
+    private void run() {
+        var batch = new ArrayList<AuthLog>();
+        var retryDelayMs = INITIAL_RETRY_DELAY_MS;
+
+        while (true) {
+            try {
+                // A batch that failed is tried again by itself, rather than waiting on the next log to come in.
+                if (batch.isEmpty()) {
+                    batch.add(queue.take());
+
+                    // Give other logins a moment to join this batch.
+                    var next = queue.poll(GROUP_COMMIT_WINDOW_MS, TimeUnit.MILLISECONDS);
+                    if (next != null)
+                        batch.add(next);
+
+                    queue.drainTo(batch, MAX_BATCH_SIZE - batch.size());
+                }
+
+                this.write(batch);
+                retryDelayMs = INITIAL_RETRY_DELAY_MS;
+            } catch (InterruptedException e) {
+                return;
+            } catch (Exception e) {
+                System.err.println("Failed to write " + batch.size() + " auth logs, trying again in " + retryDelayMs + "ms: " + e);
+
+                try {
+                    Thread.sleep(retryDelayMs);
+                } catch (InterruptedException interrupted) {
+                    return;
+                }
+
+                retryDelayMs = Math.min(retryDelayMs * 2, MAX_RETRY_DELAY_MS);
+            }
+        }
+    }
+
+    // Logs are taken out of the batch as their segment is written, so if a later segment fails, only the logs that
+    // weren't written yet are tried again.
+    private void write(List<AuthLog> batch) throws IOException {
+        // A batch can straddle the end of a day or month, so split it up by the segment each log belongs in.
+        var segments = new LinkedHashMap<File, List<AuthLog>>();
+        for (AuthLog log : batch) {
+            segments.computeIfAbsent(store.getSegmentFile(log.timestamp()), $ -> new ArrayList<>()).add(log);
+        }
+
+        store.ensureDirectory();
+
+        var startedSegment = false;
+        for (var entry : segments.entrySet()) {
+            startedSegment |= !entry.getKey().exists();
+
+            store.append(entry.getKey(), entry.getValue());
+
+            batch.removeAll(entry.getValue());
+
+            synchronized (this) {
+                written += entry.getValue().size();
+                this.notifyAll();
+            }
+        }
+
+        // Only worth checking for expired segments when moving onto a new one.
+        if (startedSegment)
+            store.applyRetention();
+    }
+}
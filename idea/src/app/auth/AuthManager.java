@@ -3,11 +3,13 @@ package app.auth;
 import app.util.ByteArrayUtils;
 import app.util.data.DataSerializable;
 import app.util.data.DataSerializers;
+import app.util.data.PersistenceScheduler;
 
 import java.io.File;
 import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
 import java.util.*;
 import java.util.regex.Pattern;
 
@@ -28,17 +30,29 @@ public class AuthManager implements Iterable<Account>, DataSerializable {
     }
 
     private final List<Account> accounts = new ArrayList<>();
-    private final List<AuthLog> authLogs = new ArrayList<>();
+    // Lookup indexes for the accounts list. Emails are stored lowercased, as they are case-insensitive.
+    private final Map<String, Account> accountsByEmail = new HashMap<>();
+    private final Map<UUID, Account> accountsByUUID = new HashMap<>();
+    // Accounts saved before emails were case-insensitive can share an email with another account apart from its casing.
+    // The first of them keeps the lowercased index entry, and the others are indexed here by their exact email instead,
+    // so every one of them can still log in.
+    private final Map<String, Account> emailCollisions = new HashMap<>();
     private final AccountType type;
 
     private final File accountFile;
-    private final File authLogsFile;
+    // Auth logs used to be kept in a single file, before being split up into monthly segments.
+    private final File legacyAuthLogsFile;
+    private final AuthLogStore authLogStore;
+    private final AuthLogWriter authLogWriter;
 
     public AuthManager(AccountType type) {
         this.type = type;
 
-        this.accountFile = new File(type.name().toLowerCase(Locale.ROOT) + "_accounts.txt");
-        this.authLogsFile = new File(type.name().toLowerCase(Locale.ROOT) + "_auth_logs.txt");
+        var name = type.name().toLowerCase(Locale.ROOT);
+        this.accountFile = new File(name + "_accounts.txt");
+        this.legacyAuthLogsFile = new File(name + "_auth_logs.txt");
+        this.authLogStore = new AuthLogStore(new File(name + "_auth_logs"), AuthLogStore.Partitioning.MONTHLY);
+        this.authLogWriter = new AuthLogWriter(authLogStore, name);
 
         this.load();
     }
@@ -47,56 +61,90 @@ public class AuthManager implements Iterable<Account>, DataSerializable {
         return type;
     }
 
-    public Iterator<Account> iterator() {
-        return this.accounts.iterator();
+    // Iterates over a copy, as accounts may be changed by another thread (or saved by the PersistenceScheduler)
+    // while the caller is going through them.
+    public synchronized Iterator<Account> iterator() {
+        return new ArrayList<>(this.accounts).iterator();
     }
 
-    public Collection<Account> getAccounts() {
-        return this.accounts;
+    public synchronized Collection<Account> getAccounts() {
+        return new ArrayList<>(this.accounts);
     }
 
+    // Auth logs can go back years, so they're never kept in memory. Every call reads them from the log segments into a
+    // new list, which the caller can go through while more logs are being added.
     public Iterator<AuthLog> authLogIterator() {
-        return this.authLogs.iterator();
+        return this.getAuthLogs().iterator();
     }
 
+    public List<AuthLog> getAuthLogs() {
+        return this.getAuthLogs(null, Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    // Reads the auth logs between the two timestamps (inclusive), only touching the segments covering that range.
+    public List<AuthLog> getAuthLogs(long from, long to) {
+        return this.getAuthLogs(null, from, to);
+    }
+
+    public List<AuthLog> getAuthLogs(UUID account) {
+        return this.getAuthLogs(account, Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    // Reads the auth logs for an account between the two timestamps (inclusive), or for every account if it is null.
+    // Only the segments in range which the account has logs in are opened. The store has its own lock, so this doesn't
+    // hold up logins while the segments are read.
+    public List<AuthLog> getAuthLogs(UUID account, long from, long to) {
+        // Flushed first, so logs that were just added are included.
+        authLogWriter.flush();
+
+        var logs = new ArrayList<AuthLog>();
+        authLogStore.forEachLog(account, from, to, logs::add);
+
+        return logs;
+    }
+
+    // Sets how long auth logs are kept for before their segment is deleted, or null to keep them forever.
+    public void setAuthLogRetention(Duration retention) {
+        authLogWriter.flush();
+        authLogStore.setRetention(retention);
+    }
+
+    // Everything that reads or changes the accounts is synchronized, as the PersistenceScheduler saves them from its
+    // own thread while the UI may be changing them.
     @Override
-    public void load() {
+    public synchronized void load() {
         accounts.clear();
-        authLogs.clear();
+        accountsByEmail.clear();
+        accountsByUUID.clear();
+        emailCollisions.clear();
 
         DataSerializers.deserializeLines(Account.class, accountFile, accounts);
-        DataSerializers.deserializeLines(AuthLog.class, authLogsFile, authLogs);
-    }
 
-    @Override
-    public void save() {
-        DataSerializers.serializeValues(Account.class, accountFile, accounts);
-        DataSerializers.serializeValues(AuthLog.class, authLogsFile, authLogs);
-    }
+        authLogWriter.flush();
+        authLogStore.migrate(legacyAuthLogsFile);
+        authLogStore.applyRetention();
 
-    public Account getAccountByEmail(String email) {
-        // Search for an account with a given email
         for (Account account : accounts) {
-            if (account.getEmail().equals(email)) {
-                return account;
-            }
+            this.index(account);
         }
+    }
 
-        return null;
+    // Only the accounts need saving, as auth logs are written out by the AuthLogWriter as they're added.
+    @Override
+    public synchronized void save() {
+        DataSerializers.serializeValues(Account.class, accountFile, accounts);
     }
 
-    public Account getAccountByUUID(UUID uuid) {
-        // Search for an account with a given UUID
-        for (Account account : accounts) {
-            if (account.getUUID().equals(uuid)) {
-                return account;
-            }
-        }
+    public synchronized Account getAccountByEmail(String email) {
+        var account = emailCollisions.get(email);
+        return account != null ? account : accountsByEmail.get(normalizeEmail(email));
+    }
 
-        return null;
+    public synchronized Account getAccountByUUID(UUID uuid) {
+        return accountsByUUID.get(uuid);
     }
 
-    public Account create(String email, String displayName, String password) {
+    public synchronized Account create(String email, String displayName, String password) {
         if (this.getAccountByEmail(email) != null)
             throw new IllegalArgumentException("An account with that email already exists!");
 
@@ -115,18 +163,52 @@ public class AuthManager implements Iterable<Account>, DataSerializable {
 
         var account = new Account(this.getType(), uuid, email, displayName, hashPassword(password));
         this.accounts.add(account);
+        this.index(account);
         this.addAuthLog(account, AuthLog.Type.REGISTER);
-        this.save();
+        PersistenceScheduler.getInstance().markDirty(this);
 
         return account;
     }
 
-    public void deleteAccount(Account account) {
-        this.accounts.remove(account);
-        this.save();
+    public synchronized void deleteAccount(Account account) {
+        if (!this.accounts.remove(account))
+            return;
+
+        this.unindexEmail(account);
+        accountsByUUID.remove(account.getUUID());
+        PersistenceScheduler.getInstance().markDirty(this);
+    }
+
+    public synchronized void changeEmail(Account account, String email) {
+        if (normalizeEmail(email).equals(normalizeEmail(account.getEmail()))) {
+            // Only the casing changed, so the index entry can stay where it is, unless it's indexed by its exact email.
+            if (emailCollisions.remove(account.getEmail(), account))
+                emailCollisions.put(email, account);
+
+            account.setEmail(email);
+            PersistenceScheduler.getInstance().markDirty(this);
+            return;
+        }
+
+        if (this.getAccountByEmail(email) != null)
+            throw new IllegalArgumentException("An account with that email already exists!");
+
+        checkValidEmail(email);
+
+        this.unindexEmail(account);
+        account.setEmail(email);
+        accountsByEmail.put(normalizeEmail(email), account);
+
+        this.addAuthLog(account, AuthLog.Type.CHANGE_EMAIL);
+        PersistenceScheduler.getInstance().markDirty(this);
     }
 
-    public Account login(String email, String password) {
+    public synchronized void changeDisplayName(Account account, String displayName) {
+        account.setDisplayName(displayName);
+        PersistenceScheduler.getInstance().markDirty(this);
+    }
+
+    public synchronized Account login(String email, String password) {
         var account = this.getAccountByEmail(email);
 
         if (account == null) {
@@ -138,12 +220,11 @@ public class AuthManager implements Iterable<Account>, DataSerializable {
         }
 
         this.addAuthLog(account, AuthLog.Type.LOGIN);
-        this.save();
 
         return account;
     }
 
-    public void changePassword(Account account, String oldPassword, String newPassword) {
+    public synchronized void changePassword(Account account, String oldPassword, String newPassword) {
         checkStrongPassword(newPassword);
 
         if (!account.getPasswordHash().equals(this.hashPassword(oldPassword))) {
@@ -156,7 +237,7 @@ public class AuthManager implements Iterable<Account>, DataSerializable {
 
         account.setPasswordHash(this.hashPassword(newPassword));
         this.addAuthLog(account, AuthLog.Type.CHANGE_PASSWORD);
-        this.save();
+        PersistenceScheduler.getInstance().markDirty(this);
     }
 
     public void addAuthLog(Account account, AuthLog.Type type) {
@@ -164,7 +245,43 @@ public class AuthManager implements Iterable<Account>, DataSerializable {
     }
 
     public void addAuthLog(Account account, AuthLog.Type type, String extraData) {
-        this.authLogs.add(new AuthLog(account.getUUID(), type, System.currentTimeMillis(), extraData));
+        authLogWriter.append(new AuthLog(account.getUUID(), type, System.currentTimeMillis(), extraData));
+    }
+
+    private void index(Account account) {
+        var existing = accountsByEmail.putIfAbsent(normalizeEmail(account.getEmail()), account);
+
+        // New accounts can't collide, as creating them checks for the email first, so this can only happen on load.
+        if (existing != null) {
+            System.err.println("Account " + account.getUUID() + " (" + account.getEmail() + ") has the same email as account "
+                + existing.getUUID() + " (" + existing.getEmail() + ") apart from casing, so it can only log in with that exact email");
+            emailCollisions.put(account.getEmail(), account);
+        }
+
+        accountsByUUID.put(account.getUUID(), account);
+    }
+
+    private void unindexEmail(Account account) {
+        if (emailCollisions.remove(account.getEmail(), account))
+            return;
+
+        var email = normalizeEmail(account.getEmail());
+        accountsByEmail.remove(email, account);
+
+        // An account that was only indexed by its exact email because of this one can now take its place.
+        for (var iterator = emailCollisions.values().iterator(); iterator.hasNext(); ) {
+            var other = iterator.next();
+
+            if (normalizeEmail(other.getEmail()).equals(email)) {
+                iterator.remove();
+                accountsByEmail.put(email, other);
+                break;
+            }
+        }
+    }
+
+    private static String normalizeEmail(String email) {
+        return email.toLowerCase(Locale.ROOT);
     }
 
     private String hashPassword(String password) {
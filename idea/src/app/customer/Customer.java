@@ -8,8 +8,10 @@ import app.product.*;
 import app.seller.Seller;
 import app.ui.ComponentHelper;
 import app.ui.MultilineTextLabel;
+import app.ui.ScreenLoader;
 import app.ui.ScrollablePanel;
 import app.ui.SharedScreens;
+import app.ui.VirtualListPanel;
 import app.util.ColorUtils;
 import app.util.Utils;
 
@@ -20,9 +22,12 @@ import javax.swing.border.LineBorder;
 import java.awt.*;
 import java.awt.font.TextAttribute;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
 
 public class Customer {
     private static final int PANEL_WIDTH = 775;
+    private static final int ORDER_PAGE_SIZE = 50;
     
     private static final AuthManager authManager = new AuthManager(AccountType.CUSTOMER);
 
@@ -52,7 +57,7 @@ public class Customer {
             panel.setLayout(new BoxLayout(panel, BoxLayout.Y_AXIS));
             panel.setOpaque(false);
 
-            panel.add(Utils.make(new JButton(account.getDisplayName(), new ImageIcon(Utils.getCircularImage(Utils.resizeImage("profile.png", 24, 24)))), button -> {
+            panel.add(Utils.make(new JButton(account.getDisplayName(), new ImageIcon(Utils.getCircularImage("profile.png", 24, 24))), button -> {
                 button.setOpaque(false);
                 button.setToolTipText("View Account Details");
 
@@ -80,8 +85,7 @@ public class Customer {
         }
 
         {
-            var contentPanel = new ScrollablePanel();
-            contentPanel.setLayout(new BoxLayout(contentPanel, BoxLayout.Y_AXIS));
+            var contentPanel = new VirtualListPanel<Product>(PANEL_WIDTH - 2, 80);
             contentPanel.setOpaque(false);
 
             var mainScrollPane = new JScrollPane(contentPanel);
@@ -92,7 +96,7 @@ public class Customer {
             mainScrollPane.setHorizontalScrollBarPolicy(ScrollPaneConstants.HORIZONTAL_SCROLLBAR_NEVER);
             mainScrollPane.setVerticalScrollBarPolicy(ScrollPaneConstants.VERTICAL_SCROLLBAR_NEVER);
 
-            for (Product product : ProductManager.getInstance().products()) {
+            Function<Product, JComponent> createProductRow = product -> {
                 var panel = new JPanel(new FlowLayout(FlowLayout.LEFT));
 
                 panel.setPreferredSize(new Dimension(PANEL_WIDTH  - 2, 80));
@@ -177,10 +181,20 @@ public class Customer {
                     });
                 }));
 
-                contentPanel.add(panel);
-            }
+                return panel;
+            };
 
-            mainPanel.add(mainScrollPane);
+            // The catalog is copied in the background, with a placeholder shown in the meantime.
+            var storefrontPanel = new JPanel(new FlowLayout(FlowLayout.CENTER, 0, 0));
+            storefrontPanel.setOpaque(false);
+            storefrontPanel.setPreferredSize(mainScrollPane.getPreferredSize());
+
+            ScreenLoader.getInstance().load(storefrontPanel, () -> ProductManager.getInstance().getProductsSnapshot(), products -> {
+                contentPanel.setRows(products, createProductRow);
+                storefrontPanel.add(mainScrollPane);
+            });
+
+            mainPanel.add(storefrontPanel);
         }
 
         window.getContentPane().add(mainPanel);
@@ -207,7 +221,7 @@ public class Customer {
             panel.setLayout(new BoxLayout(panel, BoxLayout.Y_AXIS));
             panel.setOpaque(false);
 
-            panel.add(Utils.make(new JButton(account.getDisplayName(), new ImageIcon(Utils.getCircularImage(Utils.resizeImage("profile.png", 24, 24)))), button -> {
+            panel.add(Utils.make(new JButton(account.getDisplayName(), new ImageIcon(Utils.getCircularImage("profile.png", 24, 24))), button -> {
                 button.setOpaque(false);
                 button.setToolTipText("View Account Details");
 
@@ -226,7 +240,13 @@ public class Customer {
                 button.setEnabled(OrderManager.getInstance().countCartItems(account.getUUID()) > 0);
 
                 button.addActionListener(e -> {
-                    OrderManager.getInstance().placeOrder(account.getUUID());
+                    try {
+                        OrderManager.getInstance().placeOrder(account.getUUID());
+                    } catch (IllegalArgumentException exception) {
+                        JOptionPane.showMessageDialog(Main.getFrame(), exception.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+                        return;
+                    }
+
                     showShoppingCartScreen(account);
                 });
             }));
@@ -270,7 +290,8 @@ public class Customer {
                 var product = ProductManager.getInstance().getProduct(productBarcode);
                 var panel = new JPanel(new FlowLayout(FlowLayout.LEFT));
 
-                if (Math.min(product.getStock(), amount) <= 0)
+                // Removed or sold out products are left out, and aren't ordered either (see OrderManager.placeOrder).
+                if (product == null || Math.min(product.getStock(), amount) <= 0)
                     return;
 
                 panel.setPreferredSize(new Dimension(PANEL_WIDTH  - 2, 60));
@@ -334,8 +355,7 @@ public class Customer {
 
                 var spinner = new JSpinner(new SpinnerNumberModel(Math.min(product.getStock(), amount), 1, product.getStock(), 1));
                 spinner.addChangeListener(e -> {
-                    cart.products().put(productBarcode, (int) spinner.getValue());
-                    OrderManager.getInstance().save();
+                    OrderManager.getInstance().setCartQuantity(account.getUUID(), product, (int) spinner.getValue());
                 });
 
                 panel.add(spinner);
@@ -345,8 +365,7 @@ public class Customer {
                     button.setToolTipText("Remove from Cart");
 
                     button.addActionListener(e -> {
-                        cart.products().remove(productBarcode);
-                        OrderManager.getInstance().save();
+                        OrderManager.getInstance().setCartQuantity(account.getUUID(), product, 0);
                         showShoppingCartScreen(account);
                     });
                 }));
@@ -379,7 +398,7 @@ public class Customer {
             panel.setLayout(new BoxLayout(panel, BoxLayout.Y_AXIS));
             panel.setOpaque(false);
 
-            panel.add(Utils.make(new JButton(account.getDisplayName(), new ImageIcon(Utils.getCircularImage(Utils.resizeImage("profile.png", 24, 24)))), button -> {
+            panel.add(Utils.make(new JButton(account.getDisplayName(), new ImageIcon(Utils.getCircularImage("profile.png", 24, 24))), button -> {
                 button.setOpaque(false);
                 button.setToolTipText("View Account Details");
 
@@ -398,8 +417,7 @@ public class Customer {
         }
 
         {
-            var contentPanel = new ScrollablePanel();
-            contentPanel.setLayout(new BoxLayout(contentPanel, BoxLayout.Y_AXIS));
+            var contentPanel = new VirtualListPanel<Order>(PANEL_WIDTH - 2, 80);
             contentPanel.setOpaque(false);
 
             var mainScrollPane = new JScrollPane(contentPanel);
@@ -410,7 +428,9 @@ public class Customer {
             mainScrollPane.setHorizontalScrollBarPolicy(ScrollPaneConstants.HORIZONTAL_SCROLLBAR_NEVER);
             mainScrollPane.setVerticalScrollBarPolicy(ScrollPaneConstants.VERTICAL_SCROLLBAR_NEVER);
 
-            var orders = OrderManager.getInstance().getOrderHistory(account.getUUID());
+            // Orders are shown a page at a time, with the next page loaded once the end of the list is scrolled to.
+            var page = new AtomicReference<>(OrderManager.getInstance().getOrderHistoryPage(account.getUUID(), OrderPage.FIRST_PAGE, ORDER_PAGE_SIZE));
+            var orders = page.get().orders();
 
             if (orders.isEmpty()) {
                 var panel = new JPanel(new FlowLayout(FlowLayout.CENTER));
@@ -420,10 +440,10 @@ public class Customer {
                     label.setForeground(Color.BLACK);
                 }));
 
-                contentPanel.add(panel);
+                contentPanel.setPlaceholder(panel);
             }
 
-            for (Order order : orders.reversed()) {
+            contentPanel.setRows(orders, order -> {
                 var panel = new JPanel(new FlowLayout(FlowLayout.LEFT));
 
                 panel.setPreferredSize(new Dimension(PANEL_WIDTH  - 2, 80));
@@ -441,8 +461,7 @@ public class Customer {
                     infoPanel.add(Utils.make(new JButton("Request Refund"), button -> {
                         ComponentHelper.makeHyperlink(button);
                         button.addActionListener(e -> {
-                            order.setPaymentStatus(PaymentStatus.REQUESTING_REFUND);
-                            OrderManager.getInstance().save();
+                            OrderManager.getInstance().setPaymentStatus(order, PaymentStatus.REQUESTING_REFUND);
                             showOrderHistoryScreen(account);
                         });
                     }));
@@ -450,8 +469,7 @@ public class Customer {
                     infoPanel.add(Utils.make(new JButton("Make Payment"), button -> {
                         ComponentHelper.makeHyperlink(button);
                         button.addActionListener(e -> {
-                            order.setPaymentStatus(PaymentStatus.COMPLETED);
-                            OrderManager.getInstance().save();
+                            OrderManager.getInstance().setPaymentStatus(order, PaymentStatus.COMPLETED);
                             showOrderHistoryScreen(account);
                         });
                     }));
@@ -464,11 +482,12 @@ public class Customer {
                     pane.setForeground(Color.WHITE);
                     pane.setOpaque(false);
 
-                    order.getProducts().forEach((barcode, amount) -> {
-                        var product = ProductManager.getInstance().getProduct(barcode);
-                        pane.add(new JLabel(amount + "x - " + product.getName()));
-                        pane.add(new JLabel(" -  Seller: " + Seller.getAuthManager().getAccountByUUID(product.getSeller()).getDisplayName()));
-                    });
+                    for (OrderLine line : order.getLines()) {
+                        var seller = Seller.getAuthManager().getAccountByUUID(line.seller());
+
+                        pane.add(new JLabel(line.quantity() + "x - " + line.name()));
+                        pane.add(new JLabel(" -  Seller: " + (seller == null ? "Unknown" : seller.getDisplayName())));
+                    }
                 }));
                 scrollPane.setBorder(new CompoundBorder(
                     new EmptyBorder(0, 3, 2, 3),
@@ -492,8 +511,16 @@ public class Customer {
 
                 panel.add(numbersPanel);
 
-                contentPanel.add(panel);
-            }
+                return panel;
+            });
+
+            contentPanel.setEndReachedListener(() -> {
+                if (!page.get().hasMore())
+                    return;
+
+                page.set(OrderManager.getInstance().getOrderHistoryPage(account.getUUID(), page.get().nextCursor(), ORDER_PAGE_SIZE));
+                contentPanel.addRows(page.get().orders());
+            });
 
             mainPanel.add(mainScrollPane);
         }
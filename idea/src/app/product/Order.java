@@ -1,9 +1,12 @@
 package app.product;
 
 import app.util.Utils;
-import app.util.data.DataSerializer;
-import app.util.data.DataSerializers;
+import app.util.data.*;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 
@@ -15,18 +18,21 @@ public class Order {
     private OrderStatus status = OrderStatus.PENDING;
     private PaymentStatus paymentStatus = PaymentStatus.PENDING;
     private final double totalCost;
-    private final Map<String, Integer> products;
+    private final List<OrderLine> lines;
+    // Whether the order's stock was taken out of the catalog when it was placed, and hasn't been given back since.
+    // Orders placed before stock was reserved at checkout never took any, so they must not give any back either.
+    private boolean stockReserved = false;
 
-    public Order(UUID account, int orderId, long orderTimestamp, double totalCost, Map<String, Integer> products) {
+    public Order(UUID account, int orderId, long orderTimestamp, double totalCost, List<OrderLine> lines) {
         this.account = account;
         this.orderId = orderId;
         this.orderTimestamp = orderTimestamp;
         this.totalCost = totalCost;
-        this.products = products;
+        this.lines = List.copyOf(lines);
     }
 
-    public Order(UUID account, int orderId, long orderTimestamp, long deliveredTimestamp, double totalCost, OrderStatus status, PaymentStatus paymentStatus, Map<String, Integer> products) {
-        this(account, orderId, orderTimestamp, totalCost, products);
+    public Order(UUID account, int orderId, long orderTimestamp, long deliveredTimestamp, double totalCost, OrderStatus status, PaymentStatus paymentStatus, List<OrderLine> lines) {
+        this(account, orderId, orderTimestamp, totalCost, lines);
         this.deliveredTimestamp = deliveredTimestamp;
         this.status = status;
         this.paymentStatus = paymentStatus;
@@ -72,18 +78,41 @@ public class Order {
         this.paymentStatus = paymentStatus;
     }
 
+    public boolean isStockReserved() {
+        return stockReserved;
+    }
+
+    void setStockReserved(boolean stockReserved) {
+        this.stockReserved = stockReserved;
+    }
+
+    public List<OrderLine> getLines() {
+        return lines;
+    }
+
+    // The quantity of each product in the order, by barcode.
     public Map<String, Integer> getProducts() {
+        var products = new LinkedHashMap<String, Integer>();
+
+        for (OrderLine line : lines) {
+            products.merge(line.barcode(), line.quantity(), Integer::sum);
+        }
+
         return products;
     }
 
-    public static class Serializer extends DataSerializer<Order> {
+    // Orders are stored flat, one per line: the order's fields, the amount of products in it, a barcode and quantity
+    // segment for every product, the seller, name and unit price of every product, and finally whether the order's
+    // stock is still reserved. Orders saved before the seller, name and price were stored are filled in from the
+    // catalog when they're read, and orders saved before the last part never reserved any stock.
+    public static class Serializer extends BinaryDataSerializer<Order> {
         public Serializer() {
             super(Order.class);
         }
 
         @Override
         public String serialize(Order value) {
-            return DataSerializers.writeSegmentedLine(Utils.allToStrings(
+            var segments = Utils.allToStrings(
                 value.getAccountUUID(),
                 value.getOrderId(),
                 value.getOrderTimestamp(),
@@ -91,24 +120,145 @@ public class Order {
                 value.getTotalCost(),
                 value.getStatus().name(),
                 value.getPaymentStatus().name(),
-                DataSerializers.getSerializer("product_map").serialize(value.getProducts())
-            ));
+                value.getLines().size()
+            );
+
+            for (OrderLine line : value.getLines()) {
+                segments.add(line.barcode());
+                segments.add(String.valueOf(line.quantity()));
+            }
+
+            for (OrderLine line : value.getLines()) {
+                segments.add(line.seller().toString());
+                segments.add(line.name());
+                segments.add(String.valueOf(line.unitPrice()));
+            }
+
+            segments.add(String.valueOf(value.isStockReserved()));
+
+            return DataSerializers.writeSegmentedLine(segments);
         }
 
         @Override
         public Order deserialize(String data) {
-            var split = DataSerializers.readSegmentedLine(data);
-
-            return new Order(
-                UUID.fromString(split.get(0)),
-                Integer.parseInt(split.get(1)),
-                Long.parseLong(split.get(2)),
-                Long.parseLong(split.get(3)),
-                Double.parseDouble(split.get(4)),
-                OrderStatus.valueOf(split.get(5)),
-                PaymentStatus.valueOf(split.get(6)),
-                (Map<String, Integer>) DataSerializers.getSerializer("product_map").deserialize(split.get(7))
-            );
+            var cursor = new SegmentCursor(data);
+
+            var account = cursor.nextUUID();
+            var orderId = cursor.nextInt();
+            var orderTimestamp = cursor.nextLong();
+            var deliveredTimestamp = cursor.nextLong();
+            var totalCost = cursor.nextDouble();
+            var status = cursor.nextEnum(OrderStatus.class);
+            var paymentStatus = cursor.nextEnum(PaymentStatus.class);
+
+            var lineCount = cursor.nextInt();
+            var barcodes = new String[lineCount];
+            var quantities = new int[lineCount];
+
+            for (var i = 0; i < lineCount; i++) {
+                barcodes[i] = cursor.nextString();
+                quantities[i] = cursor.nextInt();
+            }
+
+            var lines = new ArrayList<OrderLine>(lineCount);
+            var stockReserved = false;
+
+            if (lineCount > 0 && !cursor.next()) {
+                for (var i = 0; i < lineCount; i++) {
+                    lines.add(OrderLine.fromCatalog(barcodes[i], quantities[i]));
+                }
+            } else {
+                for (var i = 0; i < lineCount; i++) {
+                    // The first seller segment was already moved onto above.
+                    var seller = i == 0 ? UUID.fromString(cursor.string()) : cursor.nextUUID();
+                    lines.add(new OrderLine(barcodes[i], seller, cursor.nextString(), cursor.nextDouble(), quantities[i]));
+                }
+
+                stockReserved = cursor.next() && Boolean.parseBoolean(cursor.string());
+            }
+
+            var order = new Order(account, orderId, orderTimestamp, deliveredTimestamp, totalCost, status, paymentStatus, lines);
+            order.setStockReserved(stockReserved);
+            return order;
+        }
+
+        @Override
+        public void writeBinary(BinaryDataOutput output, Order value) throws IOException {
+            output.writeUUID(value.getAccountUUID());
+            output.writeVarInt(value.getOrderId());
+            output.writeVarLong(value.getOrderTimestamp());
+            output.writeSignedVarLong(value.getDeliveredTimestamp());
+            output.writeDouble(value.getTotalCost());
+            output.writeEnum(value.getStatus());
+            output.writeEnum(value.getPaymentStatus());
+
+            output.writeVarInt(value.getLines().size());
+            for (OrderLine line : value.getLines()) {
+                output.writeString(line.barcode());
+                output.writeVarInt(line.quantity());
+            }
+
+            for (OrderLine line : value.getLines()) {
+                output.writeUUID(line.seller());
+                output.writeString(line.name());
+                output.writeDouble(line.unitPrice());
+            }
+
+            output.writeVarInt(value.isStockReserved() ? 1 : 0);
+        }
+
+        @Override
+        public Order readBinary(BinaryDataInput input) throws IOException {
+            var account = input.readUUID();
+            var orderId = input.readVarInt();
+            var orderTimestamp = input.readVarLong();
+            var deliveredTimestamp = input.readSignedVarLong();
+            var totalCost = input.readDouble();
+            var status = input.readEnum(OrderStatus.class);
+            var paymentStatus = input.readEnum(PaymentStatus.class);
+
+            var lineCount = input.readVarInt();
+            var barcodes = new String[lineCount];
+            var quantities = new int[lineCount];
+
+            for (var i = 0; i < lineCount; i++) {
+                barcodes[i] = input.readString();
+                quantities[i] = input.readVarInt();
+            }
+
+            var lines = new ArrayList<OrderLine>(lineCount);
+            var hasDetails = input.hasRemaining();
+
+            for (var i = 0; i < lineCount; i++) {
+                if (hasDetails)
+                    lines.add(new OrderLine(barcodes[i], input.readUUID(), input.readString(), input.readDouble(), quantities[i]));
+                else
+                    lines.add(OrderLine.fromCatalog(barcodes[i], quantities[i]));
+            }
+
+            var order = new Order(account, orderId, orderTimestamp, deliveredTimestamp, totalCost, status, paymentStatus, lines);
+            order.setStockReserved(input.hasRemaining() && input.readVarInt() != 0);
+            return order;
+        }
+
+        // Reads an order from the old customer_orders.txt layout, where the products were a nested segmented line.
+        public Order deserializeLegacy(SegmentCursor cursor) {
+            var mapSerializer = (Product.MapSerializer) DataSerializers.<Map<String, Integer>>getSerializer("product_map");
+
+            var account = cursor.nextUUID();
+            var orderId = cursor.nextInt();
+            var orderTimestamp = cursor.nextLong();
+            var deliveredTimestamp = cursor.nextLong();
+            var totalCost = cursor.nextDouble();
+            var status = cursor.nextEnum(OrderStatus.class);
+            var paymentStatus = cursor.nextEnum(PaymentStatus.class);
+
+            var lines = new ArrayList<OrderLine>();
+            mapSerializer.deserialize(cursor.nextNested()).forEach((barcode, quantity) -> {
+                lines.add(OrderLine.fromCatalog(barcode, quantity));
+            });
+
+            return new Order(account, orderId, orderTimestamp, deliveredTimestamp, totalCost, status, paymentStatus, lines);
         }
     }
 
@@ -0,0 +1,28 @@
+package app.product;
+
+import java.util.UUID;
+
+// A product in an order, along with the details of that product at the time it was ordered. This lets orders be
+// shown and added up without going back to the catalog, which may have changed (or lost the product) since.
+public record OrderLine(String barcode, UUID seller, String name, double unitPrice, int quantity) {
+    // Used as the seller for lines whose product had already been deleted before lines kept their own details.
+    public static final UUID UNKNOWN_SELLER = new UUID(0, 0);
+
+    public static OrderLine of(Product product, int quantity) {
+        return new OrderLine(product.getBarcode(), product.getSeller(), product.getName(), product.getPriceWithDiscount(), quantity);
+    }
+
+    // Older orders only stored the barcode and quantity, so the rest has to be filled in from the catalog as it is now.
+    public static OrderLine fromCatalog(String barcode, int quantity) {
+        var product = ProductManager.getInstance().getProduct(barcode);
+
+        if (product == null)
+            return new OrderLine(barcode, UNKNOWN_SELLER, "Deleted product", 0.0, quantity);
+
+        return of(product, quantity);
+    }
+
+    public double getTotal() {
+        return unitPrice * quantity;
+    }
+}
@@ -1,195 +1,463 @@
 package app.product;
 
+import app.util.data.DataJournal;
+import app.util.data.DataSerializable;
 import app.util.data.DataSerializers;
+import app.util.data.PersistenceScheduler;
+import app.util.data.SegmentCursor;
 
 import java.io.File;
-import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
-import java.nio.file.StandardOpenOption;
 import java.util.*;
-import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
-public class OrderManager {
+public class OrderManager implements DataSerializable {
+    // Handed out by getCart for customers without a cart. Declared before the instance, as loading may already need it.
+    private static final ShoppingCart EMPTY_CART = new ShoppingCart(null, Map.of());
     private static final OrderManager instance = new OrderManager();
 
+    // How many order events can build up before we fold them back into orders.txt.
+    private static final int COMPACTION_THRESHOLD = 1000;
+    // How many locks customers are spread over. Two customers sharing a lock just means they wait on each other.
+    private static final int CUSTOMER_LOCK_STRIPES = 64;
+
     public static OrderManager getInstance() {
         return instance;
     }
 
-    private final List<ShoppingCart> customerCarts = new ArrayList<>();
-    private final Map<UUID, List<Order>> customerOrderHistory = new HashMap<>();
-    private int lastOrderId = 0;
+    private final Map<UUID, ShoppingCart> customerCarts = new ConcurrentHashMap<>();
+    // Each customer's orders, sorted by order ID. A history is only touched while holding its customer's lock.
+    private final Map<UUID, List<Order>> customerOrderHistory = new ConcurrentHashMap<>();
+    private final Map<Integer, Order> ordersById = new ConcurrentHashMap<>();
+    // Every order containing at least one of a seller's products, so a seller's orders can be found without going
+    // through everybody else's. Sorted by order ID, like the customer histories.
+    private final Map<UUID, List<Order>> ordersBySeller = new ConcurrentHashMap<>();
+    private final RevenueStats revenueStats = new RevenueStats();
+    private final AtomicInteger lastOrderId = new AtomicInteger();
+
+    // Checkouts for different customers can run at the same time, so each customer's cart and history is guarded
+    // by one of these rather than by a lock on the whole manager.
+    private final Object[] customerLocks = new Object[CUSTOMER_LOCK_STRIPES];
+    // Anything writing to the order event log holds the read lock, so that save() can take the write lock to make
+    // sure no event is rotated out of the log without also making it into the snapshot.
+    private final ReentrantReadWriteLock snapshotLock = new ReentrantReadWriteLock();
 
     private final File cartFile = new File("shopping_carts.txt");
-    private final File ordersFile = new File("customer_orders.txt");
+    // Only the carts that changed are written into the cart journal, which is folded back into cartFile once it gets big.
+    private final DataJournal cartJournal = new DataJournal(new File("shopping_carts_journal.txt"), COMPACTION_THRESHOLD, this::writeCarts);
+    private final Set<UUID> changedCarts = ConcurrentHashMap.newKeySet();
+    private final File ordersFile = new File("orders.txt");
+    private final File legacyOrdersFile = new File("customer_orders.txt");
+    // Every change to an order since orders.txt was last written, replayed on top of it when loading.
+    private final DataJournal orderEvents = new DataJournal(new File("order_events.txt"), COMPACTION_THRESHOLD, this::save);
+    // Held for the whole of a save, so a background compaction can't overlap with another save and have an older
+    // snapshot of orders.txt land after a newer one.
+    private final Object saveLock = new Object();
 
     private OrderManager() {
+        for (var i = 0; i < customerLocks.length; i++) {
+            customerLocks[i] = new Object();
+        }
+
         this.load();
     }
 
-    public Map<String, Integer> getAllProductsForSeller(UUID sellerId, Order order) {
-        var products = new HashMap<String, Integer>();
+    public List<OrderLine> getAllLinesForSeller(UUID sellerId, Order order) {
+        var lines = new ArrayList<OrderLine>();
 
-        order.getProducts().forEach((barcode, amount) -> {
-            var product = ProductManager.getInstance().getProduct(barcode);
+        for (OrderLine line : order.getLines()) {
+            if (line.seller().equals(sellerId))
+                lines.add(line);
+        }
 
-            if (product.getSeller().equals(sellerId)) {
-                products.put(barcode, amount);
-            }
-        });
+        return lines;
+    }
 
-        return products;
+    public RevenueStats getRevenueStats() {
+        return revenueStats;
     }
 
-    public Collection<Order> getAllOrders() {
-        var orders = new ArrayList<Order>();
+    // A page of a seller's orders, newest first. Start with OrderPage.FIRST_PAGE, then pass in each page's nextCursor.
+    public OrderPage getOrdersWithSellerPage(UUID sellerId, int cursor, int pageSize) {
+        var orders = ordersBySeller.get(sellerId);
+        if (orders == null)
+            return OrderPage.of(List.of(), cursor, pageSize);
 
-        customerOrderHistory.forEach(($, customerOrders) -> {
-            orders.addAll(customerOrders);
-        });
+        synchronized (orders) {
+            return OrderPage.of(orders, cursor, pageSize);
+        }
+    }
 
-        return orders;
+    // A page of a customer's orders, newest first. Start with OrderPage.FIRST_PAGE, then pass in each page's nextCursor.
+    public OrderPage getOrderHistoryPage(UUID customerId, int cursor, int pageSize) {
+        synchronized (this.getCustomerLock(customerId)) {
+            return OrderPage.of(customerOrderHistory.getOrDefault(customerId, List.of()), cursor, pageSize);
+        }
     }
 
-    public List<Order> getAllOrdersWithSeller(UUID sellerId) {
-        var orders = new ArrayList<Order>();
+    public Collection<Order> getAllOrders() {
+        return new ArrayList<>(ordersById.values());
+    }
 
-        customerOrderHistory.forEach(($, orderHistory) -> {
-            for (Order order : orderHistory) {
-                if (!getAllProductsForSeller(sellerId, order).isEmpty()) {
-                    orders.add(order);
-                }
-            }
-        });
+    public List<Order> getAllOrdersWithSeller(UUID sellerId) {
+        var orders = ordersBySeller.get(sellerId);
+        if (orders == null)
+            return new ArrayList<>();
 
-        return orders;
+        synchronized (orders) {
+            return new ArrayList<>(orders);
+        }
     }
 
     public void addToCart(UUID customerId, Product product, int quantity) {
-        var cart = this.getCart(customerId);
-        // Sets the value of [barcode] to [quantity] if it does not exist,
-        // otherwise the value of [barcode] = (value of [barcode]) + [quantity]
-        cart.products().compute(product.getBarcode(), (k, v) -> v == null ? quantity : v + quantity);
-        this.save();
+        synchronized (this.getCustomerLock(customerId)) {
+            var cart = this.getOrCreateCart(customerId);
+            cart.setQuantity(product.getBarcode(), cart.products().getOrDefault(product.getBarcode(), 0) + quantity);
+        }
+
+        this.saveCart(customerId);
     }
 
     public void removeFromCart(UUID customerId, Product product, int quantity) {
-        var cart = this.getCart(customerId);
-        var current = cart.products().getOrDefault(product.getBarcode(), 0);
+        synchronized (this.getCustomerLock(customerId)) {
+            var cart = this.getOrCreateCart(customerId);
+            // Going down to zero (or below) takes the product out of the cart.
+            cart.setQuantity(product.getBarcode(), cart.products().getOrDefault(product.getBarcode(), 0) - quantity);
+        }
 
-        if (current - quantity <= 0) {
-            cart.products().remove(product.getBarcode());
-        } else {
-            cart.products().put(product.getBarcode(), current - quantity);
+        this.saveCart(customerId);
+    }
+
+    public void setCartQuantity(UUID customerId, Product product, int quantity) {
+        synchronized (this.getCustomerLock(customerId)) {
+            this.getOrCreateCart(customerId).setQuantity(product.getBarcode(), quantity);
         }
 
-        this.save();
+        this.saveCart(customerId);
     }
 
     public Order placeOrder(UUID customerId) {
-        var cart = this.getCart(customerId);
-        var products = new HashMap<>(cart.products()); // Copy the products map so we can clear ours
-        List<Order> history = customerOrderHistory.computeIfAbsent(customerId, k -> new ArrayList<>());
-
-        var totalCost = new AtomicReference<>(0.0);
-        products.forEach((barcode, amount) -> {
-            var product = ProductManager.getInstance().getProduct(barcode);
-            totalCost.set(totalCost.get() + (product.getPriceWithDiscount() * (double) amount));
-        });
+        Order order;
 
-        var order = new Order(customerId, ++lastOrderId, System.currentTimeMillis(), totalCost.get(), products);
-        history.add(order);
-        cart.products().clear();
+        synchronized (this.getCustomerLock(customerId)) {
+            var cart = this.getCart(customerId);
+            var products = new HashMap<String, Integer>();
 
-        this.save();
+            // Only order what the cart screen shows: products that have since been removed or sold out are dropped,
+            // and anything else is cut down to the stock left, the same as its spinner.
+            cart.products().forEach((barcode, amount) -> {
+                var product = ProductManager.getInstance().getProduct(barcode);
+                var quantity = product == null ? 0 : Math.min(amount, product.getStock());
+
+                if (quantity > 0)
+                    products.put(barcode, quantity);
+            });
+
+            if (products.isEmpty() && !cart.products().isEmpty())
+                throw new IllegalArgumentException("None of the products in your cart are available anymore!");
+
+            // Throws if any of the products don't have enough stock, in which case nothing is taken.
+            ProductManager.getInstance().reserveStock(products);
+
+            snapshotLock.readLock().lock();
+            try {
+                try {
+                    // Capture each product as it is right now, so later changes to the catalog don't change the order.
+                    var lines = new ArrayList<OrderLine>(products.size());
+                    var totalCost = 0.0;
+
+                    for (var entry : products.entrySet()) {
+                        var line = OrderLine.fromCatalog(entry.getKey(), entry.getValue());
+                        lines.add(line);
+                        totalCost += line.getTotal();
+                    }
+
+                    order = new Order(customerId, lastOrderId.incrementAndGet(), System.currentTimeMillis(), totalCost, lines);
+                    order.setStockReserved(true);
+
+                    orderEvents.append(List.of(OrderEvent.PLACED.name(), DataSerializers.getSerializerFor(Order.class).serialize(order)));
+                } catch (RuntimeException | Error e) {
+                    // The order was never recorded, so the stock it took can go back on sale.
+                    ProductManager.getInstance().releaseStock(products);
+                    throw e;
+                }
+
+                this.getHistory(customerId).add(order);
+                ordersById.put(order.getOrderId(), order);
+                this.indexSellers(order);
+                revenueStats.update(order);
+            } finally {
+                snapshotLock.readLock().unlock();
+            }
+
+            if (cart != EMPTY_CART)
+                cart.clear();
+        }
+
+        this.saveCart(customerId);
 
         return order;
     }
 
-    public int countCartItems(UUID customerId) {
-        var count = 0;
-        for (Integer value : getCart(customerId).products().values()) {
-            count += value;
+    public void setOrderStatus(Order order, OrderStatus status) {
+        this.recordEvent(order, () -> {
+            order.setStatus(status);
+
+            // The stock taken by a cancelled order can go back on sale. Only orders that actually took stock give it
+            // back, and only once, however many times the order is cancelled and reopened.
+            if (status == OrderStatus.CANCELLED && order.isStockReserved()) {
+                order.setStockReserved(false);
+                ProductManager.getInstance().releaseStock(order.getProducts());
+            }
+        }, OrderEvent.STATUS_CHANGED, status.name());
+    }
+
+    public void setPaymentStatus(Order order, PaymentStatus paymentStatus) {
+        this.recordEvent(order, () -> {
+            order.setPaymentStatus(paymentStatus);
+            revenueStats.update(order);
+        }, OrderEvent.PAYMENT_STATUS_CHANGED, paymentStatus.name());
+    }
+
+    public void setDeliveredTimestamp(Order order, long deliveredTimestamp) {
+        this.recordEvent(order, () -> order.setDeliveredTimestamp(deliveredTimestamp), OrderEvent.DELIVERED, String.valueOf(deliveredTimestamp));
+    }
+
+    // Changes an order and logs the change, making sure that changes to the same order are logged in the order they happened.
+    private void recordEvent(Order order, Runnable change, OrderEvent event, String value) {
+        snapshotLock.readLock().lock();
+        try {
+            synchronized (order) {
+                change.run();
+                orderEvents.append(List.of(event.name(), String.valueOf(order.getOrderId()), value));
+            }
+        } finally {
+            snapshotLock.readLock().unlock();
         }
+    }
 
-        return count;
+    public int countCartItems(UUID customerId) {
+        var cart = customerCarts.get(customerId);
+        return cart == null ? 0 : cart.itemCount();
     }
 
+    // Customers who have never added anything share one empty cart, rather than each getting one kept (and saved)
+    // just for looking at it. Carts can only be changed through the methods above, which create them as needed.
     public ShoppingCart getCart(UUID customerId) {
-        for (ShoppingCart cart : customerCarts) {
-            if (cart.customerID().equals(customerId))
-                return cart;
-        }
+        return customerCarts.getOrDefault(customerId, EMPTY_CART);
+    }
 
-        var cart = new ShoppingCart(customerId, new HashMap<>());
-        customerCarts.add(cart);
-        return cart;
+    private ShoppingCart getOrCreateCart(UUID customerId) {
+        return customerCarts.computeIfAbsent(customerId, $ -> new ShoppingCart(customerId, new HashMap<>()));
     }
 
+    // A copy of the customer's orders, oldest first, so it can be gone through while more orders are being placed.
     public List<Order> getOrderHistory(UUID customerId) {
+        synchronized (this.getCustomerLock(customerId)) {
+            return new ArrayList<>(customerOrderHistory.getOrDefault(customerId, List.of()));
+        }
+    }
+
+    // Must be called while holding the customer's lock.
+    private List<Order> getHistory(UUID customerId) {
         return customerOrderHistory.computeIfAbsent(customerId, $ -> new ArrayList<>());
     }
 
+    private Object getCustomerLock(UUID customerId) {
+        return customerLocks[Math.floorMod(customerId.hashCode(), customerLocks.length)];
+    }
+
+    @Override
     public void load() {
+        snapshotLock.writeLock().lock();
+        try {
+            this.loadUnderLock();
+        } finally {
+            snapshotLock.writeLock().unlock();
+        }
+    }
+
+    private void loadUnderLock() {
         customerCarts.clear();
         customerOrderHistory.clear();
-        lastOrderId = 0;
+        ordersById.clear();
+        ordersBySeller.clear();
+        revenueStats.clear();
+        lastOrderId.set(0);
 
-        DataSerializers.deserializeLines(ShoppingCart.class, cartFile, customerCarts);
+        DataSerializers.deserializeLines(ShoppingCart.class, cartFile, cart -> customerCarts.put(cart.customerID(), cart));
 
-        // We can't serialize a map, so let's reimplement this.
-        try {
-            if (ordersFile.exists()) {
-                var lines = Files.readAllLines(ordersFile.toPath(), StandardCharsets.UTF_8);
+        var cartSerializer = DataSerializers.getSerializerFor(ShoppingCart.class);
+        cartJournal.replay(segments -> {
+            var cart = cartSerializer.deserialize(segments.get(1));
+
+            if (cart.itemCount() > 0)
+                customerCarts.put(cart.customerID(), cart);
+            else
+                customerCarts.remove(cart.customerID());
+        });
+
+        if (!ordersFile.exists() && legacyOrdersFile.exists()) {
+            this.migrateLegacyOrders();
+        } else {
+            DataSerializers.deserializeLines(Order.class, ordersFile, this::addLoadedOrder);
+        }
 
-                for (String line : lines) {
-                    var segments = DataSerializers.readSegmentedLine(line);
-                    var uuid = UUID.fromString(segments.get(0));
-                    var serializedOrders = DataSerializers.readSegmentedLine(segments.get(1));
-                    var orderHistory = this.getOrderHistory(uuid);
+        var serializer = DataSerializers.getSerializerFor(Order.class);
+        orderEvents.replay(segments -> {
+            var event = OrderEvent.valueOf(segments.get(0));
 
-                    for (String serializedOrder : serializedOrders) {
-                        var order = DataSerializers.getSerializerFor(Order.class).deserialize(serializedOrder);
+            if (event == OrderEvent.PLACED) {
+                var order = serializer.deserialize(segments.get(1));
 
-                        // Order ID should be incremental.
-                        if (lastOrderId < order.getOrderId())
-                            lastOrderId = order.getOrderId();
+                // The order may already be in the snapshot, if we stopped in the middle of compacting.
+                if (!ordersById.containsKey(order.getOrderId()))
+                    this.addLoadedOrder(order);
 
-                        orderHistory.add(order);
-                    }
+                return;
+            }
+
+            var order = ordersById.get(Integer.parseInt(segments.get(1)));
+            if (order == null)
+                return;
+
+            switch (event) {
+                case STATUS_CHANGED -> {
+                    order.setStatus(OrderStatus.valueOf(segments.get(2)));
+
+                    if (order.getStatus() == OrderStatus.CANCELLED)
+                        order.setStockReserved(false);
                 }
+                case PAYMENT_STATUS_CHANGED -> order.setPaymentStatus(PaymentStatus.valueOf(segments.get(2)));
+                case DELIVERED -> order.setDeliveredTimestamp(Long.parseLong(segments.get(2)));
             }
-        } catch (Exception e) {
-            throw new RuntimeException(e);
-        }
+        });
+
+        // Histories and the seller index are built in one go once everything is loaded, going through the orders by ID
+        // so that they come out sorted no matter what order the files had them in. Revenue is only counted now too, as
+        // the events can change whether an order has been paid for.
+        ordersById.values().stream()
+            .sorted(Comparator.comparingInt(Order::getOrderId))
+            .forEach(order -> {
+                this.getHistory(order.getAccountUUID()).add(order);
+                this.indexSellers(order);
+                revenueStats.update(order);
+            });
     }
 
+    // Writes out every cart and order, and clears the order event log.
+    @Override
     public void save() {
-        DataSerializers.serializeValues(ShoppingCart.class, cartFile, customerCarts);
+        synchronized (saveLock) {
+            List<Order> orders;
 
-        try {
-            if (!ordersFile.exists()) {
-                ordersFile.createNewFile();
+            this.writeCarts();
+
+            snapshotLock.writeLock().lock();
+            try {
+                orders = new ArrayList<>(this.getAllOrders());
+                orderEvents.rotate();
+            } finally {
+                snapshotLock.writeLock().unlock();
             }
 
-            var lines = new ArrayList<String>();
+            DataSerializers.serializeValues(Order.class, ordersFile, orders);
+            orderEvents.finishRotation();
+        }
+    }
 
-            customerOrderHistory.forEach((customerId, orders) -> {
-                var serializedOrders = new ArrayList<String>();
+    // Carts change far more often than anything else, so they're written out in the background.
+    private void saveCart(UUID customerId) {
+        changedCarts.add(customerId);
+        PersistenceScheduler.getInstance().markDirty(cartJournal, this::writeChangedCarts);
+    }
 
-                for (Order order : orders) {
-                    serializedOrders.add(DataSerializers.getSerializerFor(Order.class).serialize(order));
-                }
+    private void writeChangedCarts() {
+        var serializer = DataSerializers.getSerializerFor(ShoppingCart.class);
 
-                lines.add(DataSerializers.writeSegmentedLine(List.of(
-                    customerId.toString(),
-                    DataSerializers.writeSegmentedLine(serializedOrders)
-                )));
-            });
+        for (var iterator = changedCarts.iterator(); iterator.hasNext(); ) {
+            var customerId = iterator.next();
+            iterator.remove();
 
-            Files.write(ordersFile.toPath(), lines, StandardCharsets.UTF_8, StandardOpenOption.WRITE);
-        } catch (Exception e) {
-            throw new RuntimeException(e);
+            // Written while holding the customer's lock, so entries for the same cart are always in the order they changed.
+            synchronized (this.getCustomerLock(customerId)) {
+                var cart = customerCarts.getOrDefault(customerId, new ShoppingCart(customerId, Map.of()));
+                cartJournal.append(List.of(customerId.toString(), serializer.serialize(cart)));
+            }
         }
     }
+
+    private synchronized void writeCarts() {
+        cartJournal.rotate();
+
+        var carts = new ArrayList<ShoppingCart>(customerCarts.size());
+
+        // Copy each cart while holding its customer's lock, so it isn't changed halfway through being written.
+        customerCarts.forEach((customerId, cart) -> {
+            synchronized (this.getCustomerLock(customerId)) {
+                if (cart.itemCount() > 0)
+                    carts.add(new ShoppingCart(customerId, cart.products()));
+            }
+        });
+
+        DataSerializers.serializeValues(ShoppingCart.class, cartFile, carts);
+        cartJournal.finishRotation();
+    }
+
+    // Customer histories and the seller index are filled in afterwards by loadUnderLock, all at once.
+    private void addLoadedOrder(Order order) {
+        // Order ID should be incremental.
+        lastOrderId.accumulateAndGet(order.getOrderId(), Math::max);
+
+        ordersById.put(order.getOrderId(), order);
+    }
+
+    private void indexSellers(Order order) {
+        var sellers = new HashSet<UUID>();
+
+        for (OrderLine line : order.getLines()) {
+            if (!line.seller().equals(OrderLine.UNKNOWN_SELLER))
+                sellers.add(line.seller());
+        }
+
+        for (UUID seller : sellers) {
+            var orders = ordersBySeller.computeIfAbsent(seller, $ -> Collections.synchronizedList(new ArrayList<>()));
+
+            // Checkouts for different customers can finish out of order, so this isn't always the newest order. It
+            // nearly always goes at (or right by) the end though.
+            synchronized (orders) {
+                orders.add(OrderPage.indexOf(orders, order.getOrderId()), order);
+            }
+        }
+    }
+
+    // Orders used to be stored as one line per customer, with every order nested inside it (and every order's products
+    // nested inside that), which needed more escaping the deeper it went. This converts it over to the flat format once.
+    private void migrateLegacyOrders() {
+        var serializer = (Order.Serializer) DataSerializers.getSerializerFor(Order.class);
+
+        DataSerializers.forEachLine(legacyOrdersFile, line -> {
+            var cursor = new SegmentCursor(line);
+            cursor.nextUUID(); // Customer UUID, which each order also has.
+
+            var serializedOrders = cursor.nextNested();
+
+            while (serializedOrders.next()) {
+                this.addLoadedOrder(serializer.deserializeLegacy(new SegmentCursor(serializedOrders.view())));
+            }
+        });
+
+        this.save();
+
+        if (!legacyOrdersFile.renameTo(new File(legacyOrdersFile.getPath() + ".migrated")))
+            throw new IllegalStateException("Failed to move aside " + legacyOrdersFile.getName() + " after migrating it!");
+    }
+
+    private enum OrderEvent {
+        PLACED,
+        STATUS_CHANGED,
+        PAYMENT_STATUS_CHANGED,
+        DELIVERED
+    }
 }
@@ -0,0 +1,42 @@
+package app.product;
+
+import java.util.List;
+
+// A page of orders, newest first. The cursor is passed back to OrderManager to get the page after this one.
+// Order lists are kept sorted by order ID, and the cursor is the ID of the oldest order on the page, so the next page
+// carries on from the right place even if new orders are placed in the meantime.
+public record OrderPage(List<Order> orders, int nextCursor) {
+    // The cursor for the first (newest) page.
+    public static final int FIRST_PAGE = Integer.MAX_VALUE;
+    // Order IDs start from 1, so this can never be the oldest order on a page.
+    private static final int NO_MORE_PAGES = 0;
+
+    public boolean hasMore() {
+        return nextCursor != NO_MORE_PAGES;
+    }
+
+    // Takes the page of orders older than the cursor, where the orders are sorted by ID.
+    static OrderPage of(List<Order> orders, int cursor, int pageSize) {
+        var end = indexOf(orders, cursor);
+        var start = Math.max(end - pageSize, 0);
+        var page = List.copyOf(orders.subList(start, end).reversed());
+
+        return new OrderPage(page, start > 0 ? page.getLast().getOrderId() : NO_MORE_PAGES);
+    }
+
+    // Where an order with the given ID is (or would be) in a list sorted by ID.
+    static int indexOf(List<Order> orders, int orderId) {
+        int low = 0, high = orders.size();
+
+        while (low < high) {
+            var middle = (low + high) >>> 1;
+
+            if (orders.get(middle).getOrderId() < orderId)
+                low = middle + 1;
+            else
+                high = middle;
+        }
+
+        return low;
+    }
+}
@@ -1,13 +1,14 @@
 package app.product;
 
 import app.util.Utils;
-import app.util.data.DataSerializer;
-import app.util.data.DataSerializers;
+import app.util.data.*;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class Product {
     private final UUID seller;
@@ -15,7 +16,8 @@ public class Product {
     private String name;
     private String description;
     private double price;
-    private int stock;
+    // Atomic so that concurrent checkouts can take stock without locking the product.
+    private final AtomicInteger stock;
     private double discount;
     private ProductCategory category;
 
@@ -25,7 +27,7 @@ public class Product {
         this.name = name;
         this.description = description;
         this.price = price;
-        this.stock = stock;
+        this.stock = new AtomicInteger(stock);
         this.discount = discount;
         this.category = category;
     }
@@ -67,11 +69,33 @@ public class Product {
     }
 
     public int getStock() {
-        return stock;
+        return stock.get();
     }
 
     public void setStock(int stock) {
-        this.stock = stock;
+        this.stock.set(stock);
+    }
+
+    // Adds to (or takes away from, if negative) whatever stock there is right now, never going below zero. Used for
+    // edits made against an older stock count, so stock taken by checkouts in the meantime isn't put back.
+    public void adjustStock(int change) {
+        stock.updateAndGet(current -> Math.max(current + change, 0));
+    }
+
+    // Takes the amount out of stock if there is enough of it, returning whether it did.
+    boolean tryReserveStock(int amount) {
+        while (true) {
+            var current = stock.get();
+            if (current < amount)
+                return false;
+
+            if (stock.compareAndSet(current, current - amount))
+                return true;
+        }
+    }
+
+    void releaseStock(int amount) {
+        stock.addAndGet(amount);
     }
 
     public double getDiscount() {
@@ -90,7 +114,7 @@ public class Product {
         this.category = category;
     }
 
-    public static class Serializer extends DataSerializer<Product> {
+    public static class Serializer extends BinaryDataSerializer<Product> {
         public Serializer() {
             super(Product.class);
         }
@@ -102,10 +126,45 @@ public class Product {
 
         @Override
         public Product deserialize(String data) {
-            var split = DataSerializers.readSegmentedLine(data);
-            var category = split.size() < 8 ? ProductCategory.UNCATEGORIZED : ProductCategory.valueOf(split.get(7));
+            var cursor = new SegmentCursor(data);
+
+            var seller = cursor.nextUUID();
+            var barcode = cursor.nextString();
+            var name = cursor.nextString();
+            var description = cursor.nextString();
+            var price = cursor.nextDouble();
+            var stock = cursor.nextInt();
+            var discount = cursor.nextDouble();
+            // Older products were saved before categories existed.
+            var category = cursor.next() ? ProductCategory.valueOf(cursor.string()) : ProductCategory.UNCATEGORIZED;
+
+            return new Product(seller, barcode, name, description, price, stock, discount, category);
+        }
+
+        @Override
+        public void writeBinary(BinaryDataOutput output, Product value) throws IOException {
+            output.writeUUID(value.getSeller());
+            output.writeString(value.getBarcode());
+            output.writeString(value.getName());
+            output.writeString(value.getDescription());
+            output.writeDouble(value.getPrice());
+            output.writeVarInt(value.getStock());
+            output.writeDouble(value.getDiscount());
+            output.writeEnum(value.getCategory());
+        }
 
-            return new Product(UUID.fromString(split.get(0)), split.get(1), split.get(2), split.get(3), Double.parseDouble(split.get(4)), Integer.parseInt(split.get(5)), Double.parseDouble(split.get(6)), category);
+        @Override
+        public Product readBinary(BinaryDataInput input) throws IOException {
+            return new Product(
+                input.readUUID(),
+                input.readString(),
+                input.readString(),
+                input.readString(),
+                input.readDouble(),
+                input.readVarInt(),
+                input.readDouble(),
+                input.readEnum(ProductCategory.class)
+            );
         }
     }
 
@@ -126,13 +185,20 @@ public class Product {
 
         @Override
         public Map<String, Integer> deserialize(String data) {
-            var segments = DataSerializers.readSegmentedLine(data);
+            return this.deserialize(new SegmentCursor(data));
+        }
+
+        public Map<String, Integer> deserialize(SegmentCursor cursor) {
             var products = new HashMap<String, Integer>();
 
-            for (String s : segments) {
-                var split = s.split(":");
+            while (cursor.next()) {
+                var entry = cursor.view();
+                var separator = entry.length() - 1;
+
+                while (separator > 0 && entry.charAt(separator) != ':')
+                    separator--;
 
-                products.put(split[0], Integer.parseInt(split[1]));
+                products.put(entry.subSequence(0, separator).toString(), Integer.parseInt(entry, separator + 1, entry.length(), 10));
             }
 
             return products;
@@ -1,22 +1,36 @@
 package app.product;
 
 import app.auth.Account;
+import app.util.data.DataJournal;
+import app.util.data.DataSerializable;
 import app.util.data.DataSerializers;
 
 import java.io.File;
-import java.util.ArrayList;
-import java.util.Collection;
-import java.util.List;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
-public class ProductManager {
+public class ProductManager implements DataSerializable {
     private static final ProductManager instance = new ProductManager();
 
+    // How many journal entries can build up before we fold them back into the snapshot.
+    private static final int COMPACTION_THRESHOLD = 1000;
+
     public static ProductManager getInstance() {
         return instance;
     }
 
     private final List<Product> products = new ArrayList<>();
+    // Indexes kept alongside the products list, so lookups don't need to scan the whole catalog.
+    // Concurrent, as checkouts look products up without holding the manager's lock.
+    private final Map<String, Product> productsByBarcode = new ConcurrentHashMap<>();
+    private final Map<UUID, List<Product>> productsBySeller = new HashMap<>();
     private final File productsFile = new File("products.txt");
+    private final DataJournal journal = new DataJournal(new File("products_journal.txt"), COMPACTION_THRESHOLD, this::save);
+    // Held for the whole of a save, so that two saves (such as a background compaction and an explicit save) can't
+    // overlap. Otherwise the older snapshot could finish last and overwrite the newer one, after the journal entries
+    // covering the difference had already been deleted. Kept apart from the catalog's lock so checkouts aren't held
+    // up while the file is being written.
+    private final Object saveLock = new Object();
 
     private ProductManager() {
         this.load();
@@ -26,40 +40,195 @@ public class ProductManager {
         return this.products;
     }
 
-    public Product addProduct(String barcode, Account seller, String name, String description, double price, int stock) {
+    // A copy of the catalog as it is right now, which can be gone through while products are added and removed, such as
+    // from a background load.
+    public synchronized List<Product> getProductsSnapshot() {
+        return new ArrayList<>(this.products);
+    }
+
+    public synchronized Product addProduct(String barcode, Account seller, String name, String description, double price, int stock) {
+        if (this.getProduct(barcode) != null)
+            throw new IllegalArgumentException("A product with that barcode already exists!");
+
         var product = new Product(seller.getUUID(), barcode, name, description, price, stock, 0.0, ProductCategory.UNCATEGORIZED);
         products.add(product);
+        this.index(product);
 
-        this.save();
+        this.writeJournal(JournalOperation.ADD, product);
         return product;
     }
 
-    public void removeProduct(String barcode) {
+    public synchronized void removeProduct(String barcode) {
         var product = getProduct(barcode);
         if (product == null)
             return;
 
-        this.products.remove(product);
-        this.save();
+        // Holding the product too means an update to it can't be journaled after it's been removed, which would bring
+        // it back when the journal is replayed.
+        synchronized (product) {
+            this.products.remove(product);
+            this.unindex(product);
+            this.journal.append(List.of(JournalOperation.REMOVE.name(), barcode));
+        }
     }
 
-    public Product getProduct(String barcode) {
-        for (Product product : products) {
-            if (product.getBarcode().equals(barcode)) {
-                return product;
+    // Should be called after changing any of a product's fields, so the change is persisted.
+    // Only the product itself is locked, not the whole catalog, so checkouts of different products can journal their
+    // stock changes at the same time. Updates to the same product are still journaled one at a time, so the last
+    // entry always holds its latest values.
+    public void updateProduct(Product product) {
+        synchronized (product) {
+            // It has been removed since, so there's nothing left to update.
+            if (this.getProduct(product.getBarcode()) != product)
+                return;
+
+            this.writeJournal(JournalOperation.UPDATE, product);
+        }
+    }
+
+    // Takes the given amounts of each product out of stock, either all of them or none of them. Each product's stock is
+    // only ever changed atomically, so checkouts for the same product can run at the same time without overselling it.
+    public void reserveStock(Map<String, Integer> amounts) {
+        var reserved = new ArrayList<Map.Entry<Product, Integer>>();
+
+        for (var entry : amounts.entrySet()) {
+            var product = this.getProduct(entry.getKey());
+
+            String error = null;
+            if (product == null)
+                error = "A product in your cart is no longer available!";
+            else if (!product.tryReserveStock(entry.getValue()))
+                error = "There is not enough stock left of " + product.getName() + "!";
+
+            if (error != null) {
+                // Put back everything we've taken so far.
+                for (var taken : reserved) {
+                    taken.getKey().releaseStock(taken.getValue());
+                }
+
+                throw new IllegalArgumentException(error);
             }
+
+            reserved.add(Map.entry(product, entry.getValue()));
         }
 
-        return null;
+        for (var taken : reserved) {
+            this.updateProduct(taken.getKey());
+        }
     }
 
-    public void load() {
+    // Puts stock taken by reserveStock back, such as when an order is cancelled.
+    public void releaseStock(Map<String, Integer> amounts) {
+        amounts.forEach((barcode, amount) -> {
+            var product = this.getProduct(barcode);
+
+            // Nothing to give back to a product that has since been removed.
+            if (product == null)
+                return;
+
+            product.releaseStock(amount);
+            this.updateProduct(product);
+        });
+    }
+
+    public Product getProduct(String barcode) {
+        return productsByBarcode.get(barcode);
+    }
+
+    // A copy, as the seller's list changes whenever one of their products is added or removed.
+    public synchronized List<Product> getProductsBySeller(UUID sellerId) {
+        return List.copyOf(productsBySeller.getOrDefault(sellerId, List.of()));
+    }
+
+    @Override
+    public synchronized void load() {
         products.clear();
+        productsByBarcode.clear();
+        productsBySeller.clear();
 
         DataSerializers.deserializeLines(Product.class, productsFile, products);
+
+        for (Product product : products) {
+            this.index(product);
+        }
+
+        // Then apply everything that happened since the snapshot was written.
+        var serializer = DataSerializers.getSerializerFor(Product.class);
+        journal.replay(segments -> {
+            if (segments.size() < 2)
+                return;
+
+            var operation = JournalOperation.valueOf(segments.get(0));
+            var existing = getProduct(segments.get(1));
+            var index = products.indexOf(existing);
+
+            if (existing != null)
+                this.unindex(existing);
+
+            if (operation == JournalOperation.REMOVE) {
+                if (index >= 0)
+                    products.remove(index);
+
+                return;
+            }
+
+            if (segments.size() < 3)
+                return;
+
+            // Adds and updates are both treated as upserts, so replaying an entry twice is harmless.
+            var product = serializer.deserialize(segments.get(2));
+
+            if (index >= 0)
+                products.set(index, product);
+            else
+                products.add(product);
+
+            this.index(product);
+        });
     }
 
+    // Writes out a full snapshot of the catalog and clears the journal.
+    @Override
     public void save() {
-        DataSerializers.serializeValues(Product.class, productsFile, products);
+        synchronized (saveLock) {
+            List<Product> snapshot;
+
+            synchronized (this) {
+                snapshot = new ArrayList<>(products);
+                journal.rotate();
+            }
+
+            DataSerializers.serializeValues(Product.class, productsFile, snapshot);
+            journal.finishRotation();
+        }
+    }
+
+    private void index(Product product) {
+        productsByBarcode.put(product.getBarcode(), product);
+        productsBySeller.computeIfAbsent(product.getSeller(), $ -> new ArrayList<>()).add(product);
+    }
+
+    private void unindex(Product product) {
+        productsByBarcode.remove(product.getBarcode());
+
+        var sellerProducts = productsBySeller.get(product.getSeller());
+        if (sellerProducts != null) {
+            sellerProducts.remove(product);
+
+            if (sellerProducts.isEmpty())
+                productsBySeller.remove(product.getSeller());
+        }
+    }
+
+    private void writeJournal(JournalOperation operation, Product product) {
+        var serialized = DataSerializers.getSerializerFor(Product.class).serialize(product);
+
+        journal.append(List.of(operation.name(), product.getBarcode(), serialized));
+    }
+
+    private enum JournalOperation {
+        ADD,
+        UPDATE,
+        REMOVE
     }
 }
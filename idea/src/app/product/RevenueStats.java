@@ -0,0 +1,156 @@
+package app.product;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.util.*;
+
+// Running revenue totals, kept up to date by OrderManager as orders are placed and their payment status changes.
+// Dashboards can read these straight away rather than going through every order each time they're opened.
+public class RevenueStats {
+    // Orders are put into days and months in this zone, so every dashboard splits revenue up the same way.
+    public static final ZoneId ZONE = ZoneId.systemDefault();
+
+    // Totals are kept in cents, as adding and taking away the same doubles over and over again leaves them slightly
+    // off (such as a month that should be empty showing -0.00000000000001).
+    private final TreeMap<YearMonth, Long> monthlyTotals = new TreeMap<>();
+    private final Map<YearMonth, List<Order>> monthlyOrders = new HashMap<>();
+    private final Map<UUID, Long> sellerTotals = new HashMap<>();
+    private final Map<ProductCategory, Long> categoryTotals = new EnumMap<>(ProductCategory.class);
+    // Each seller's revenue per day, for the seller dashboard's graph. Days without any revenue are left out.
+    private final Map<UUID, Map<LocalDate, Long>> sellerDailyTotals = new HashMap<>();
+    // The orders currently counted, along with the category each of their lines was counted under, so that an
+    // order can be taken back out again even if its products have been recategorised since.
+    private final Map<Integer, ProductCategory[]> countedOrders = new HashMap<>();
+
+    // Orders only count towards revenue once they've actually been paid for.
+    public static boolean countsAsRevenue(Order order) {
+        return order.getPaymentStatus() != PaymentStatus.PENDING && order.getPaymentStatus() != PaymentStatus.FAILED;
+    }
+
+    public static LocalDate getDay(Order order) {
+        return Instant.ofEpochMilli(order.getOrderTimestamp()).atZone(ZONE).toLocalDate();
+    }
+
+    public static YearMonth getMonth(Order order) {
+        return YearMonth.from(getDay(order));
+    }
+
+    // Should be called whenever an order is added, or its payment status changes.
+    synchronized void update(Order order) {
+        var counted = countedOrders.containsKey(order.getOrderId());
+
+        if (countsAsRevenue(order) && !counted)
+            this.add(order);
+        else if (!countsAsRevenue(order) && counted)
+            this.remove(order);
+    }
+
+    synchronized void clear() {
+        monthlyTotals.clear();
+        monthlyOrders.clear();
+        sellerTotals.clear();
+        categoryTotals.clear();
+        sellerDailyTotals.clear();
+        countedOrders.clear();
+    }
+
+    // Every month with revenue in it, newest first.
+    public synchronized List<YearMonth> getMonths() {
+        return new ArrayList<>(monthlyTotals.descendingKeySet());
+    }
+
+    public synchronized double getMonthlyTotal(YearMonth month) {
+        return fromCents(monthlyTotals.getOrDefault(month, 0L));
+    }
+
+    // The orders counted in a month, in the order they were counted.
+    public synchronized List<Order> getOrders(YearMonth month) {
+        return new ArrayList<>(monthlyOrders.getOrDefault(month, List.of()));
+    }
+
+    public synchronized double getSellerTotal(UUID sellerId) {
+        return fromCents(sellerTotals.getOrDefault(sellerId, 0L));
+    }
+
+    public synchronized double getCategoryTotal(ProductCategory category) {
+        return fromCents(categoryTotals.getOrDefault(category, 0L));
+    }
+
+    // The seller's revenue on each of the given amount of days, starting from the first day.
+    public synchronized double[] getSellerDailyTotals(UUID sellerId, LocalDate firstDay, int days) {
+        var totals = new double[days];
+        var daily = sellerDailyTotals.getOrDefault(sellerId, Map.of());
+
+        for (var i = 0; i < days; i++) {
+            totals[i] = fromCents(daily.getOrDefault(firstDay.plusDays(i), 0L));
+        }
+
+        return totals;
+    }
+
+    private void add(Order order) {
+        var day = getDay(order);
+        var month = YearMonth.from(day);
+        var lines = order.getLines();
+        var categories = new ProductCategory[lines.size()];
+
+        monthlyTotals.merge(month, toCents(order.getTotalCost()), Long::sum);
+        monthlyOrders.computeIfAbsent(month, $ -> new ArrayList<>()).add(order);
+
+        for (var i = 0; i < lines.size(); i++) {
+            var line = lines.get(i);
+            var product = ProductManager.getInstance().getProduct(line.barcode());
+            categories[i] = product == null ? ProductCategory.UNCATEGORIZED : product.getCategory();
+
+            sellerTotals.merge(line.seller(), toCents(line.getTotal()), Long::sum);
+            categoryTotals.merge(categories[i], toCents(line.getTotal()), Long::sum);
+            sellerDailyTotals.computeIfAbsent(line.seller(), $ -> new HashMap<>()).merge(day, toCents(line.getTotal()), Long::sum);
+        }
+
+        countedOrders.put(order.getOrderId(), categories);
+    }
+
+    private void remove(Order order) {
+        var day = getDay(order);
+        var month = YearMonth.from(day);
+        var lines = order.getLines();
+        var categories = countedOrders.remove(order.getOrderId());
+
+        monthlyTotals.computeIfPresent(month, ($, total) -> total - toCents(order.getTotalCost()));
+
+        var orders = monthlyOrders.get(month);
+        orders.remove(order);
+
+        // Drop the month entirely once nothing in it counts any more, so it isn't offered on the dashboard.
+        if (orders.isEmpty()) {
+            monthlyOrders.remove(month);
+            monthlyTotals.remove(month);
+        }
+
+        for (var i = 0; i < lines.size(); i++) {
+            var line = lines.get(i);
+
+            sellerTotals.computeIfPresent(line.seller(), ($, total) -> total - toCents(line.getTotal()));
+            categoryTotals.computeIfPresent(categories[i], ($, total) -> total - toCents(line.getTotal()));
+
+            var daily = sellerDailyTotals.get(line.seller());
+            if (daily != null) {
+                // Merging down to zero drops the day, and the seller too once they have no days left.
+                daily.merge(day, -toCents(line.getTotal()), (total, change) -> total + change == 0 ? null : total + change);
+
+                if (daily.isEmpty())
+                    sellerDailyTotals.remove(line.seller());
+            }
+        }
+    }
+
+    private static long toCents(double amount) {
+        return Math.round(amount * 100);
+    }
+
+    private static double fromCents(long cents) {
+        return cents / 100.0;
+    }
+}
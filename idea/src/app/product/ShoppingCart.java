@@ -3,11 +3,50 @@ package app.product;
 import app.util.Utils;
 import app.util.data.DataSerializer;
 import app.util.data.DataSerializers;
+import app.util.data.SegmentCursor;
 
+import java.util.Collections;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Changes to a cart go through OrderManager, so that it can keep track of which carts need saving.
+public class ShoppingCart {
+    private final UUID customerID;
+    private final Map<String, Integer> products = new ConcurrentHashMap<>();
+    // Kept up to date as products are added and removed, so counting the items doesn't need to go through the cart.
+    private volatile int itemCount = 0;
+
+    public ShoppingCart(UUID customerID, Map<String, Integer> products) {
+        this.customerID = customerID;
+
+        products.forEach(this::setQuantity);
+    }
+
+    public UUID customerID() {
+        return customerID;
+    }
+
+    public Map<String, Integer> products() {
+        return Collections.unmodifiableMap(products);
+    }
+
+    public int itemCount() {
+        return itemCount;
+    }
+
+    // Sets how many of a product are in the cart, removing it if there are none.
+    void setQuantity(String barcode, int quantity) {
+        var previous = quantity > 0 ? products.put(barcode, quantity) : products.remove(barcode);
+
+        itemCount += Math.max(quantity, 0) - (previous == null ? 0 : previous);
+    }
+
+    void clear() {
+        products.clear();
+        itemCount = 0;
+    }
 
-public record ShoppingCart(UUID customerID, Map<String, Integer> products) {
     public static class Serializer extends DataSerializer<ShoppingCart> {
         public Serializer() {
             super(ShoppingCart.class);
@@ -20,8 +59,10 @@ public record ShoppingCart(UUID customerID, Map<String, Integer> products) {
 
         @Override
         public ShoppingCart deserialize(String data) {
-            var segments = DataSerializers.readSegmentedLine(data);
-            return new ShoppingCart(UUID.fromString(segments.get(0)), (Map<String, Integer>) DataSerializers.getSerializer("product_map").deserialize(segments.get(1)));
+            var cursor = new SegmentCursor(data);
+            var mapSerializer = (Product.MapSerializer) DataSerializers.<Map<String, Integer>>getSerializer("product_map");
+
+            return new ShoppingCart(cursor.nextUUID(), mapSerializer.deserialize(cursor.nextNested()));
         }
     }
 
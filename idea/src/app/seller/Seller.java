@@ -4,16 +4,31 @@ import app.Main;
 import app.auth.Account;
 import app.auth.AccountType;
 import app.auth.AuthManager;
+import app.product.OrderManager;
+import app.product.RevenueStats;
 import app.ui.GraphBuilder;
+import app.ui.ScreenLoader;
 import app.util.ColorUtils;
 import app.util.Utils;
 
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
 import java.awt.*;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+import java.util.UUID;
 
 public class Seller {
     private static final AuthManager authManager = new AuthManager(AccountType.SELLER);
+    private static final int INSIGHT_DAYS = 30;
+
+    // Kept between visits to the dashboard, so the graph is only drawn again once the seller's revenue has changed.
+    // Only the signed in seller's graph is kept, so sellers coming and going don't each leave a drawn image behind.
+    // Only used from the EDT.
+    private static RevenueGraph revenueGraph = null;
+
+    private record RevenueGraph(UUID seller, GraphBuilder graph) {}
 
     public static AuthManager getAuthManager() {
         return authManager;
@@ -44,12 +59,39 @@ public class Seller {
             var panel = new JPanel();
             panel.setOpaque(false);
             panel.setLayout(new BoxLayout(panel, BoxLayout.PAGE_AXIS));
-            panel.add(new JLabel("Business Insights"));
+            panel.add(new JLabel("Business Insights - Revenue Per Day"));
+
+            if (revenueGraph == null || !revenueGraph.seller().equals(account.getUUID())) {
+                revenueGraph = new RevenueGraph(account.getUUID(), Utils.make(new GraphBuilder(450, 250, Color.YELLOW, ColorUtils.fromHex(0x404040), ColorUtils.fromHex(0xADADAD)), builder -> {
+                    builder.setStyle(GraphBuilder.Style.BAR);
+                    builder.setValueFormatter(Utils::formatCurrency);
+                }));
+            }
+
+            var graph = revenueGraph.graph();
+
+            // Sized up front, so the screen doesn't jump around once the graph has been drawn.
+            var graphPanel = new JPanel(new FlowLayout(FlowLayout.LEFT, 0, 0));
+            graphPanel.setOpaque(false);
+            graphPanel.setAlignmentX(Component.LEFT_ALIGNMENT);
+            graphPanel.setPreferredSize(new Dimension(460, 260));
+            graphPanel.setMaximumSize(graphPanel.getPreferredSize());
 
-            var graph = new GraphBuilder(450, 250, Color.YELLOW, ColorUtils.fromHex(0x404040), ColorUtils.fromHex(0xADADAD));
-            panel.add(Utils.make(new JLabel(new ImageIcon(graph.createImage())), component -> {
-                component.setBorder(new EmptyBorder(5, 5, 5, 5));
-            }));
+            ScreenLoader.getInstance().load(graphPanel, () -> {
+                var today = LocalDate.now(RevenueStats.ZONE);
+                var formatter = DateTimeFormatter.ofPattern("d MMM", Locale.US);
+
+                graph.setKeypoints(getDailyRevenue(account.getUUID(), today));
+                graph.setLabels(formatter.format(today.minusDays(INSIGHT_DAYS - 1)), "Today");
+
+                return graph.createImage();
+            }, image -> {
+                graphPanel.add(Utils.make(new JLabel(new ImageIcon(image)), component -> {
+                    component.setBorder(new EmptyBorder(5, 5, 5, 5));
+                }));
+            });
+
+            panel.add(graphPanel);
 
             contentsPanel.add(panel);
         }
@@ -60,4 +102,10 @@ public class Seller {
 
         Main.refresh();
     }
+
+    // The seller's revenue for each of the last INSIGHT_DAYS days, oldest first. Only orders that have been paid for
+    // are counted, the same as on the admin dashboard.
+    private static double[] getDailyRevenue(UUID sellerId, LocalDate today) {
+        return OrderManager.getInstance().getRevenueStats().getSellerDailyTotals(sellerId, today.minusDays(INSIGHT_DAYS - 1), INSIGHT_DAYS);
+    }
 }
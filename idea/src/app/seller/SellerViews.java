@@ -18,9 +18,11 @@ import java.awt.font.TextAttribute;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 
 public class SellerViews {
     private static final int PANEL_WIDTH = 775;
+    private static final int ORDER_PAGE_SIZE = 50;
 
     public static void createManageOrdersScreen(Account account) {
         Main.reset();
@@ -39,8 +41,7 @@ public class SellerViews {
         secondPanel.setOpaque(false);
 
         {
-            var contentPanel = new ScrollablePanel();
-            contentPanel.setLayout(new BoxLayout(contentPanel, BoxLayout.Y_AXIS));
+            var contentPanel = new VirtualListPanel<Order>(PANEL_WIDTH - 2, 120);
             contentPanel.setOpaque(false);
 
             var mainScrollPane = new JScrollPane(contentPanel);
@@ -51,7 +52,9 @@ public class SellerViews {
             mainScrollPane.setHorizontalScrollBarPolicy(ScrollPaneConstants.HORIZONTAL_SCROLLBAR_NEVER);
             mainScrollPane.setVerticalScrollBarPolicy(ScrollPaneConstants.VERTICAL_SCROLLBAR_NEVER);
 
-            var orders = OrderManager.getInstance().getAllOrdersWithSeller(account.getUUID());
+            // Orders are shown a page at a time, with the next page loaded once the end of the list is scrolled to.
+            var page = new AtomicReference<>(OrderManager.getInstance().getOrdersWithSellerPage(account.getUUID(), OrderPage.FIRST_PAGE, ORDER_PAGE_SIZE));
+            var orders = page.get().orders();
 
             if (orders.isEmpty()) {
                 var panel = new JPanel(new FlowLayout(FlowLayout.CENTER));
@@ -61,11 +64,11 @@ public class SellerViews {
                     label.setForeground(Color.BLACK);
                 }));
 
-                contentPanel.add(panel);
+                contentPanel.setPlaceholder(panel);
             }
 
-            for (Order order : orders.reversed()) {
-                var products = OrderManager.getInstance().getAllProductsForSeller(account.getUUID(), order);
+            contentPanel.setRows(orders, order -> {
+                var lines = OrderManager.getInstance().getAllLinesForSeller(account.getUUID(), order);
                 var panel = new JPanel(new FlowLayout(FlowLayout.LEFT));
 
                 panel.setPreferredSize(new Dimension(PANEL_WIDTH  - 2, 120));
@@ -88,9 +91,9 @@ public class SellerViews {
                     pane.setForeground(Color.WHITE);
                     pane.setOpaque(false);
 
-                    products.forEach((barcode, amount) -> {
-                        pane.add(new JLabel(amount + "x - " + ProductManager.getInstance().getProduct(barcode).getName() + "(EAN: " + barcode + ")"));
-                    });
+                    for (OrderLine line : lines) {
+                        pane.add(new JLabel(line.quantity() + "x - " + line.name() + "(EAN: " + line.barcode() + ")"));
+                    }
                 }));
                 scrollPane.setBorder(new CompoundBorder(
                     new EmptyBorder(0, 3, 2, 3),
@@ -114,25 +117,22 @@ public class SellerViews {
                 if (order.getStatus() == OrderStatus.PENDING && order.getPaymentStatus() == PaymentStatus.COMPLETED) {
                     numbersPanel.add(Utils.make(new JButton("Mark for Delivery"), button -> {
                         button.addActionListener(e -> {
-                            order.setStatus(OrderStatus.READY_FOR_DELIVERY);
-                            OrderManager.getInstance().save();
+                            OrderManager.getInstance().setOrderStatus(order, OrderStatus.READY_FOR_DELIVERY);
                             createManageOrdersScreen(account);
                         });
                     }));
                 } else if (order.getPaymentStatus() == PaymentStatus.REQUESTING_REFUND && order.getStatus() != OrderStatus.DELIVERED) {
                     numbersPanel.add(Utils.make(new JButton("Refund Order"), button -> {
                         button.addActionListener(e -> {
-                            order.setStatus(OrderStatus.CANCELLED);
-                            order.setPaymentStatus(PaymentStatus.REFUNDED);
-                            OrderManager.getInstance().save();
+                            OrderManager.getInstance().setOrderStatus(order, OrderStatus.CANCELLED);
+                            OrderManager.getInstance().setPaymentStatus(order, PaymentStatus.REFUNDED);
                             createManageOrdersScreen(account);
                         });
                     }));
 
                     numbersPanel.add(Utils.make(new JButton("Deny Refund"), button -> {
                         button.addActionListener(e -> {
-                            order.setPaymentStatus(PaymentStatus.COMPLETED);
-                            OrderManager.getInstance().save();
+                            OrderManager.getInstance().setPaymentStatus(order, PaymentStatus.COMPLETED);
                             createManageOrdersScreen(account);
                         });
                     }));
@@ -141,9 +141,8 @@ public class SellerViews {
                 if (order.getStatus() != OrderStatus.CANCELLED && order.getStatus() != OrderStatus.DELIVERED) {
                     numbersPanel.add(Utils.make(new JButton("Cancel Order"), button -> {
                         button.addActionListener(e -> {
-                            order.setStatus(OrderStatus.CANCELLED);
-                            order.setPaymentStatus(PaymentStatus.REFUNDED);
-                            OrderManager.getInstance().save();
+                            OrderManager.getInstance().setOrderStatus(order, OrderStatus.CANCELLED);
+                            OrderManager.getInstance().setPaymentStatus(order, PaymentStatus.REFUNDED);
                             createManageOrdersScreen(account);
                         });
                     }));
@@ -151,8 +150,16 @@ public class SellerViews {
 
                 panel.add(numbersPanel);
 
-                contentPanel.add(panel);
-            }
+                return panel;
+            });
+
+            contentPanel.setEndReachedListener(() -> {
+                if (!page.get().hasMore())
+                    return;
+
+                page.set(OrderManager.getInstance().getOrdersWithSellerPage(account.getUUID(), page.get().nextCursor(), ORDER_PAGE_SIZE));
+                contentPanel.addRows(page.get().orders());
+            });
 
             secondPanel.add(mainScrollPane);
         }
@@ -186,8 +193,7 @@ public class SellerViews {
         secondPanel.setOpaque(false);
 
         {
-            var contentPanel = new ScrollablePanel();
-            contentPanel.setLayout(new BoxLayout(contentPanel, BoxLayout.Y_AXIS));
+            var contentPanel = new VirtualListPanel<Product>(PANEL_WIDTH - 2, 60);
             contentPanel.setOpaque(false);
 
             var mainScrollPane = new JScrollPane(contentPanel);
@@ -198,7 +204,7 @@ public class SellerViews {
             mainScrollPane.setHorizontalScrollBarPolicy(ScrollPaneConstants.HORIZONTAL_SCROLLBAR_NEVER);
             mainScrollPane.setVerticalScrollBarPolicy(ScrollPaneConstants.VERTICAL_SCROLLBAR_NEVER);
 
-            var products = ProductManager.getInstance().products();
+            var products = ProductManager.getInstance().getProductsBySeller(account.getUUID());
 
             if (products.isEmpty()) {
                 var panel = new JPanel(new FlowLayout(FlowLayout.CENTER));
@@ -208,10 +214,10 @@ public class SellerViews {
                     label.setForeground(Color.BLACK);
                 }));
 
-                contentPanel.add(panel);
+                contentPanel.setPlaceholder(panel);
             }
 
-            for (Product product : ProductManager.getInstance().products()) {
+            contentPanel.setRows(products, product -> {
                 var panel = new JPanel(new FlowLayout(FlowLayout.LEFT));
 
                 panel.setPreferredSize(new Dimension(PANEL_WIDTH  - 2, 60));
@@ -292,8 +298,8 @@ public class SellerViews {
                     });
                 }));
 
-                contentPanel.add(panel);
-            }
+                return panel;
+            });
 
             secondPanel.add(mainScrollPane);
         }
@@ -324,7 +330,9 @@ public class SellerViews {
         var name = new PlaceholderTextField("Name");
         var description = new ListenableTextArea();
         var price = new JSpinner(new SpinnerNumberModel(product.getPrice(), 0.01, 100_000.0, 1.0));
-        var stock = new JSpinner(new SpinnerNumberModel(product.getStock(), 0, 1_000_000_000, 1));
+        // Checkouts can take stock while the form is open, so the edit is applied as a change from what was shown.
+        var originalStock = product.getStock();
+        var stock = new JSpinner(new SpinnerNumberModel(originalStock, 0, 1_000_000_000, 1));
 
         {
             var panel = new JPanel();
@@ -380,9 +388,9 @@ public class SellerViews {
                         product.setName(name.getText());
                         product.setDescription(description.getText());
                         product.setPrice((double) price.getValue());
-                        product.setStock((int) stock.getValue());
+                        product.adjustStock((int) stock.getValue() - originalStock);
 
-                        ProductManager.getInstance().save();
+                        ProductManager.getInstance().updateProduct(product);
                         createManageProductsScreen(account);
                     });
 
@@ -390,7 +398,7 @@ public class SellerViews {
                         // Disable button if either is blank - we do not allow empty values.
                         if (name.getText().isBlank() || description.getText().isBlank())
                             button.setEnabled(false);
-                        else if (name.getText().equals(product.getName()) && description.getText().equals(product.getDescription()) && (double) price.getValue() == product.getPrice() && (int) stock.getValue() == product.getStock())
+                        else if (name.getText().equals(product.getName()) && description.getText().equals(product.getDescription()) && (double) price.getValue() == product.getPrice() && (int) stock.getValue() == originalStock)
                             button.setEnabled(false); // If they're the same, don't enable the Save button
                         else
                             button.setEnabled(true); // Otherwise just allow the button to be enabled
@@ -554,7 +562,7 @@ public class SellerViews {
             )));
         }
 
-        sidebar.add(Utils.make(new JButton(account.getDisplayName(), new ImageIcon(Utils.getCircularImage(Utils.resizeImage("profile.png", 24, 24)))), button -> {
+        sidebar.add(Utils.make(new JButton(account.getDisplayName(), new ImageIcon(Utils.getCircularImage("profile.png", 24, 24))), button -> {
             button.setOpaque(false);
             button.setToolTipText("View Account Details");
 
@@ -0,0 +1,80 @@
+package app.util;
+
+import java.awt.image.BufferedImage;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+// Keeps decoded and resized images around, so that screens showing the same icon on every row don't decode and
+// resize it again for each one. Once the cached images go over MAX_BYTES, the least recently used ones are dropped.
+// Cached images are shared, so they must not be drawn onto.
+public class ImageCache {
+    private static final ImageCache instance = new ImageCache();
+
+    // Roughly how much memory the cached images can take up, assuming 4 bytes per pixel.
+    private static final long MAX_BYTES = 32L * 1024 * 1024;
+
+    public static ImageCache getInstance() {
+        return instance;
+    }
+
+    public enum Transform {
+        NONE,
+        CIRCULAR
+    }
+
+    // A width and height of -1 means the image at its original size.
+    private record Key(String path, int width, int height, Transform transform) {}
+
+    // Access ordered, so iterating starts from the least recently used image.
+    private final LinkedHashMap<Key, BufferedImage> images = new LinkedHashMap<>(16, 0.75f, true);
+    private long bytes = 0;
+
+    private ImageCache() {}
+
+    public BufferedImage get(String path, int width, int height, Transform transform, Supplier<BufferedImage> loader) {
+        var key = new Key(path, width, height, transform);
+
+        synchronized (this) {
+            var image = images.get(key);
+            if (image != null)
+                return image;
+        }
+
+        // Loaded outside of the lock, as the loader may need other images from the cache. At worst, two threads
+        // load the same image at once and one of them is thrown away.
+        var image = loader.get();
+
+        synchronized (this) {
+            var existing = images.putIfAbsent(key, image);
+            if (existing != null)
+                return existing;
+
+            bytes += sizeOf(image);
+            this.evict();
+        }
+
+        return image;
+    }
+
+    public synchronized void clear() {
+        images.clear();
+        bytes = 0;
+    }
+
+    private void evict() {
+        var iterator = images.entrySet().iterator();
+
+        // Always keep the most recent image, even if it is bigger than the limit by itself.
+        while (bytes > MAX_BYTES && images.size() > 1 && iterator.hasNext()) {
+            Map.Entry<Key, BufferedImage> eldest = iterator.next();
+
+            bytes -= sizeOf(eldest.getValue());
+            iterator.remove();
+        }
+    }
+
+    private static long sizeOf(BufferedImage image) {
+        return (long) image.getWidth() * image.getHeight() * 4;
+    }
+}
@@ -50,16 +50,27 @@ public class Utils {
         return object;
     }
 
+    // Images are cached (see ImageCache), so the returned image is shared and shouldn't be drawn onto.
     public static BufferedImage getImage(String path) {
-        try {
-            return ImageIO.read(Main.class.getResourceAsStream("/images/" + path));
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        }
+        return ImageCache.getInstance().get(path, -1, -1, ImageCache.Transform.NONE, () -> {
+            try {
+                return ImageIO.read(Main.class.getResourceAsStream("/images/" + path));
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
     }
 
     public static BufferedImage resizeImage(String path, int width, int height) {
-        var original = getImage(path);
+        return ImageCache.getInstance().get(path, width, height, ImageCache.Transform.NONE, () -> resizeImage(getImage(path), width, height));
+    }
+
+    // Resizes the image, and then cuts it into a circle.
+    public static BufferedImage getCircularImage(String path, int width, int height) {
+        return ImageCache.getInstance().get(path, width, height, ImageCache.Transform.CIRCULAR, () -> getCircularImage(resizeImage(path, width, height)));
+    }
+
+    public static BufferedImage resizeImage(BufferedImage original, int width, int height) {
         var output = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
         var g2 = output.createGraphics();
 
@@ -0,0 +1,82 @@
+package app.util.data;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+// Reads values written by BinaryDataOutput.
+public class BinaryDataInput {
+    private final DataInputStream input;
+
+    public BinaryDataInput(InputStream input) {
+        this.input = new DataInputStream(input);
+    }
+
+    // Whether there is anything left to read, for records that have had more fields added onto the end of them.
+    // Records are always read from memory, so this is exact.
+    public boolean hasRemaining() throws IOException {
+        return input.available() > 0;
+    }
+
+    public int readVarInt() throws IOException {
+        return (int) this.readVarLong();
+    }
+
+    public long readVarLong() throws IOException {
+        long value = 0;
+        var shift = 0;
+
+        while (true) {
+            var b = input.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+
+            if ((b & 0x80) == 0)
+                return value;
+
+            shift += 7;
+
+            if (shift >= 64)
+                throw new IOException("Malformed varint!");
+        }
+    }
+
+    public long readSignedVarLong() throws IOException {
+        var value = this.readVarLong();
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    public double readDouble() throws IOException {
+        return input.readDouble();
+    }
+
+    public String readString() throws IOException {
+        var bytes = new byte[this.readVarInt()];
+        input.readFully(bytes);
+
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    public UUID readUUID() throws IOException {
+        return new UUID(input.readLong(), input.readLong());
+    }
+
+    public <E extends Enum<E>> E readEnum(Class<E> type) throws IOException {
+        var ordinal = this.readVarInt();
+        var values = type.getEnumConstants();
+
+        if (ordinal < 0 || ordinal >= values.length)
+            throw new IOException("Unknown " + type.getSimpleName() + " ordinal " + ordinal);
+
+        return values[ordinal];
+    }
+
+    public void readFully(byte[] bytes) throws IOException {
+        input.readFully(bytes);
+    }
+
+    public int readInt() throws IOException {
+        return input.readInt();
+    }
+}
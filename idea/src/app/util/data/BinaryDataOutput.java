@@ -0,0 +1,65 @@
+package app.util.data;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+// Writes values in the binary storage format. Integers are written as variable-length integers (varints), so small
+// numbers only take up a byte or two, and strings are length-prefixed UTF-8.
+public class BinaryDataOutput {
+    private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+    private final DataOutputStream output = new DataOutputStream(buffer);
+
+    public void writeVarInt(int value) throws IOException {
+        this.writeVarLong(value & 0xFFFFFFFFL);
+    }
+
+    public void writeVarLong(long value) throws IOException {
+        // 7 bits at a time, with the highest bit marking that there's more to come.
+        while ((value & ~0x7FL) != 0) {
+            output.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+
+        output.writeByte((int) value);
+    }
+
+    // For values that can be negative, so that small negative numbers (such as -1) don't take up the full 10 bytes.
+    public void writeSignedVarLong(long value) throws IOException {
+        this.writeVarLong((value << 1) ^ (value >> 63));
+    }
+
+    public void writeDouble(double value) throws IOException {
+        output.writeDouble(value);
+    }
+
+    public void writeString(String value) throws IOException {
+        var bytes = value.getBytes(StandardCharsets.UTF_8);
+
+        this.writeVarInt(bytes.length);
+        output.write(bytes);
+    }
+
+    public void writeUUID(UUID value) throws IOException {
+        output.writeLong(value.getMostSignificantBits());
+        output.writeLong(value.getLeastSignificantBits());
+    }
+
+    public void writeEnum(Enum<?> value) throws IOException {
+        this.writeVarInt(value.ordinal());
+    }
+
+    public int size() {
+        return buffer.size();
+    }
+
+    public byte[] toByteArray() {
+        return buffer.toByteArray();
+    }
+
+    public void reset() {
+        buffer.reset();
+    }
+}
@@ -0,0 +1,14 @@
+package app.util.data;
+
+import java.io.IOException;
+
+// A serializer that can also store its values in the compact binary format, as well as the text format.
+// Whether a type is actually stored as binary is chosen when registering it with DataSerializers.
+public abstract class BinaryDataSerializer<T> extends DataSerializer<T> {
+    public BinaryDataSerializer(Class<T> clazz) {
+        super(clazz);
+    }
+
+    public abstract void writeBinary(BinaryDataOutput output, T value) throws IOException;
+    public abstract T readBinary(BinaryDataInput input) throws IOException;
+}
@@ -0,0 +1,133 @@
+package app.util.data;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+// An append-only log of segmented lines, used to record small mutations without rewriting a whole data file.
+// Once the journal grows past its threshold, the compactor is run in the background. It should call rotate(),
+// write out a snapshot, and then finishRotation(). Until the rotation is finished, the rotated journal is still replayed.
+// The compactor is usually the owner's save(), so that save() must hold a lock from rotate() until finishRotation().
+// Otherwise a compaction overlapping with another save could finish last with the older snapshot.
+public class DataJournal {
+    private static final ExecutorService compactionExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        var thread = new Thread(runnable, "Data Journal Compaction");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final File file;
+    private final File rotatedFile;
+    private final int compactionThreshold;
+    private final Runnable compactor;
+
+    private Writer writer;
+    private int entries = 0;
+    private boolean compactionQueued = false;
+
+    public DataJournal(File file, int compactionThreshold, Runnable compactor) {
+        this.file = file;
+        this.rotatedFile = new File(file.getPath() + ".old");
+        this.compactionThreshold = compactionThreshold;
+        this.compactor = compactor;
+    }
+
+    public synchronized void append(List<String> segments) {
+        try {
+            if (writer == null) {
+                writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file, true), StandardCharsets.UTF_8));
+            }
+
+            writer.write(DataSerializers.writeSegmentedLine(segments));
+            writer.write('\n');
+            writer.flush();
+
+            entries++;
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+
+        if (!compactionQueued && entries >= compactionThreshold) {
+            compactionQueued = true;
+
+            compactionExecutor.execute(() -> {
+                try {
+                    compactor.run();
+                } finally {
+                    synchronized (this) {
+                        compactionQueued = false;
+                    }
+                }
+            });
+        }
+    }
+
+    // The amount of entries appended or replayed since the last rotation.
+    public synchronized int size() {
+        return entries;
+    }
+
+    // Moves the current journal aside, so new entries go into a fresh file while the snapshot is being written.
+    public synchronized void rotate() {
+        try {
+            this.close();
+
+            if (file.exists()) {
+                if (rotatedFile.exists()) {
+                    // A previous compaction never finished, so keep both sets of entries in order.
+                    try (var out = new FileOutputStream(rotatedFile, true)) {
+                        Files.copy(file.toPath(), out);
+                    }
+
+                    Files.delete(file.toPath());
+                } else {
+                    Files.move(file.toPath(), rotatedFile.toPath(), StandardCopyOption.ATOMIC_MOVE);
+                }
+            }
+
+            entries = 0;
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    // Called once the snapshot containing every rotated entry has been written.
+    public synchronized void finishRotation() {
+        rotatedFile.delete();
+    }
+
+    public synchronized void replay(Consumer<List<String>> consumer) {
+        entries = 0;
+
+        for (File journalFile : List.of(rotatedFile, file)) {
+            if (!journalFile.exists())
+                continue;
+
+            DataSerializers.forEachLine(journalFile, line -> {
+                // A crash in the middle of an append can leave a partial line behind, which we simply skip.
+                if (line.isBlank() || !line.endsWith("\""))
+                    return;
+
+                consumer.accept(DataSerializers.readSegmentedLine(line));
+                entries++;
+            });
+        }
+    }
+
+    public synchronized void close() {
+        if (writer == null)
+            return;
+
+        try {
+            writer.close();
+            writer = null;
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -1,22 +1,62 @@
 package app.util.data;
 
-import java.io.File;
-import java.io.FileOutputStream;
-import java.io.OutputStreamWriter;
+import java.io.*;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
 
 public class DataSerializers {
     private static final Map<String, DataSerializer<?>> serializers = new HashMap<>();
 
+    // Data files end with a line of "#crc32 <checksum> <line count>", covering every line before it. Files that are
+    // appended to have one after each appended block of lines, covering the lines since the trailer before it.
+    private static final String CHECKSUM_PREFIX = "#crc32 ";
+    // Put before an appended block when the lines before it were written without a trailer, so the block's trailer
+    // is only checked against its own lines.
+    private static final String UNCHECKED_MARKER = "#unchecked";
+    private static boolean writeChecksums = true;
+
+    public static void setWriteChecksums(boolean writeChecksums) {
+        DataSerializers.writeChecksums = writeChecksums;
+    }
+
+    // Binary data files start with these bytes, so they can be told apart from text files when loading.
+    private static final byte[] BINARY_MAGIC = { 'E', 'C', 'B', 1 };
+    private static final Map<Class<?>, StorageFormat> storageFormats = new HashMap<>();
+
+    // Files at least this big are read through memory-mapped windows instead of a buffered stream.
+    public static final long MAPPED_READ_THRESHOLD = 64L * 1024 * 1024;
+    // On Windows a mapped file can't be replaced until the mapping is garbage collected, which there's no way to force,
+    // so saving over a file we had just loaded (see writeAtomically) would fail. Files are always streamed there instead.
+    private static final boolean MAPPED_READS_SUPPORTED = !System.getProperty("os.name", "").toLowerCase().startsWith("windows");
+
     public static DataSerializer<?> register(String name, DataSerializer<?> serializer) {
         return serializers.put(name, serializer);
     }
 
+    // Registers a serializer, choosing which format its type is saved in. Files in either format can still be loaded.
+    public static DataSerializer<?> register(String name, DataSerializer<?> serializer, StorageFormat format) {
+        if (format == StorageFormat.BINARY && !(serializer instanceof BinaryDataSerializer<?>))
+            throw new IllegalArgumentException("Serializer " + name + " does not support the binary format!");
+
+        if (serializer.getSerializableClass() != null)
+            storageFormats.put(serializer.getSerializableClass(), format);
+
+        return register(name, serializer);
+    }
+
+    public static StorageFormat getStorageFormat(Class<?> clazz) {
+        return storageFormats.getOrDefault(clazz, StorageFormat.TEXT);
+    }
+
     public static <T> DataSerializer<T> getSerializer(String name) {
         return (DataSerializer<T>) serializers.get(name);
     }
@@ -47,43 +87,351 @@ public class DataSerializers {
     }
 
     public static <T> void serializeValues(Class<T> serializable, File file, List<T> list) {
-        try {
-            var serializer = getSerializerFor(serializable);
+        serializeValues(serializable, file, list, getStorageFormat(serializable));
+    }
 
-            if (!file.exists()) {
-                file.createNewFile();
-            }
+    public static <T> void serializeValues(Class<T> serializable, File file, List<T> list, StorageFormat format) {
+        var serializer = getSerializerFor(serializable);
 
-            var lines = new ArrayList<String>();
+        if (format == StorageFormat.BINARY) {
+            writeBinaryValues((BinaryDataSerializer<T>) serializer, file, list);
+            return;
+        }
 
+        writeLines(file, writer -> {
             for (T value : list) {
-                lines.add(serializer.serialize(value));
+                writer.accept(serializer.serialize(value));
             }
+        });
+    }
+
+    // Adds the values onto the end of the file, without reading or rewriting what's already in it. The values are
+    // followed by their own checksum, covering just them. A new file is written in the type's storage format, and an
+    // existing one is kept in whichever format it's already in.
+    // Either every value ends up in the file or none of them do, as a write that fails partway through is cut back
+    // off again. Otherwise the next append would carry on after half a value.
+    public static <T> void appendValues(Class<T> serializable, File file, List<T> list) {
+        var serializer = getSerializerFor(serializable);
+        var existed = file.exists();
+        var length = file.length();
+        var binary = length > 0 ? isBinaryFile(file) : getStorageFormat(serializable) == StorageFormat.BINARY;
+        // Lines appended without a checksum have to be marked off first, or the new trailer would be checked against them too.
+        var unchecked = !binary && length > 0 && writeChecksums && readChecksumTrailer(file) == null;
+
+        try (var stream = new FileOutputStream(file, true)) {
+            if (binary) {
+                var output = new DataOutputStream(new BufferedOutputStream(stream, 64 * 1024));
+
+                if (length == 0)
+                    output.write(BINARY_MAGIC);
 
-            try (FileOutputStream stream = new FileOutputStream(file)) {
-                try (OutputStreamWriter streamWriter = new OutputStreamWriter(stream, StandardCharsets.UTF_8)) {
-                    for (String line : lines) {
-                        streamWriter.write(line);
-                        streamWriter.write('\n');
+                writeBinaryRecords((BinaryDataSerializer<T>) serializer, output, list);
+                output.flush();
+            } else {
+                var checksum = new CRC32();
+                var writer = new BufferedWriter(new OutputStreamWriter(new CheckedOutputStream(stream, checksum), StandardCharsets.UTF_8));
+
+                if (unchecked) {
+                    writer.write(UNCHECKED_MARKER + "\n");
+                    writer.flush();
+                    checksum.reset();
+                }
+
+                for (T value : list) {
+                    writer.write(serializer.serialize(value));
+                    writer.write('\n');
+                }
+
+                writer.flush();
+
+                if (writeChecksums)
+                    stream.write((CHECKSUM_PREFIX + Long.toHexString(checksum.getValue()) + " " + list.size() + "\n").getBytes(StandardCharsets.UTF_8));
+            }
+
+            stream.getChannel().force(false);
+        } catch (IOException | RuntimeException e) {
+            try {
+                if (existed) {
+                    try (var channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+                        channel.truncate(length);
                     }
+                } else {
+                    Files.deleteIfExists(file.toPath());
+                }
+            } catch (IOException truncateException) {
+                e.addSuppressed(truncateException);
+            }
+
+            throw e instanceof RuntimeException runtimeException ? runtimeException : new RuntimeException(e);
+        }
+    }
+
+    public static void writeLines(File file, Consumer<Consumer<String>> lineWriter) {
+        writeAtomically(file, stream -> {
+            var checksum = new CRC32();
+            var writer = new BufferedWriter(new OutputStreamWriter(new CheckedOutputStream(stream, checksum), StandardCharsets.UTF_8));
+            var lineCount = new long[1];
+
+            lineWriter.accept(line -> {
+                try {
+                    writer.write(line);
+                    writer.write('\n');
+                    lineCount[0]++;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
                 }
+            });
+
+            writer.flush();
+
+            if (writeChecksums) {
+                // Taken after flushing, so the trailer itself isn't part of the checksum.
+                var trailer = CHECKSUM_PREFIX + Long.toHexString(checksum.getValue()) + " " + lineCount[0] + "\n";
+                stream.write(trailer.getBytes(StandardCharsets.UTF_8));
             }
-        } catch (Exception e) {
+        });
+    }
+
+    // Binary files are the magic bytes followed by a varint length and the bytes of every record. When checksums are
+    // enabled, the records end with a zero length and the CRC32 of every record's bytes. Records appended later on
+    // (see appendValues) are followed by a checksum of their own, covering the records since the last one.
+    private static <T> void writeBinaryValues(BinaryDataSerializer<T> serializer, File file, List<T> list) {
+        writeAtomically(file, stream -> {
+            var output = new DataOutputStream(new BufferedOutputStream(stream, 64 * 1024));
+
+            output.write(BINARY_MAGIC);
+            writeBinaryRecords(serializer, output, list);
+            output.flush();
+        });
+    }
+
+    private static <T> void writeBinaryRecords(BinaryDataSerializer<T> serializer, DataOutputStream output, List<T> list) throws IOException {
+        var checksum = new CRC32();
+        var record = new BinaryDataOutput();
+        var length = new BinaryDataOutput();
+
+        for (T value : list) {
+            record.reset();
+            serializer.writeBinary(record, value);
+
+            var bytes = record.toByteArray();
+            checksum.update(bytes);
+
+            length.reset();
+            length.writeVarInt(bytes.length);
+            output.write(length.toByteArray());
+            output.write(bytes);
+        }
+
+        if (writeChecksums) {
+            output.writeByte(0);
+            output.writeInt((int) checksum.getValue());
+        }
+    }
+
+    // Writes the file to a temporary file next to the target, syncs it to disk, and then renames it over the target.
+    // This way, a crash at any point leaves either the old file or the new file in place, never a partially written one.
+    public static void writeAtomically(File file, StreamWriter streamWriter) {
+        var directory = file.getAbsoluteFile().getParentFile();
+        File tempFile = null;
+
+        try {
+            tempFile = File.createTempFile(file.getName(), ".tmp", directory);
+
+            try (var stream = new FileOutputStream(tempFile)) {
+                streamWriter.write(stream);
+                stream.getChannel().force(true);
+            }
+
+            try {
+                Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException | UncheckedIOException e) {
+            if (tempFile != null)
+                tempFile.delete();
+
             throw new RuntimeException(e);
         }
     }
 
+    public interface StreamWriter {
+        void write(OutputStream stream) throws IOException;
+    }
+
     public static <T> void deserializeLines(Class<T> serializable, File file, List<T> list) {
+        deserializeLines(serializable, file, list::add);
+    }
+
+    // Deserializes one line at a time, so only the parsed values are kept around rather than the whole file.
+    public static <T> void deserializeLines(Class<T> serializable, File file, Consumer<T> consumer) {
+        var serializer = getSerializerFor(serializable);
+
+        if (isBinaryFile(file)) {
+            readBinaryValues((BinaryDataSerializer<T>) serializer, file, consumer);
+            return;
+        }
+
+        forEachLine(file, line -> consumer.accept(serializer.deserialize(line)));
+    }
+
+    // Rewrites a data file in the given format, for example to switch an existing text file over to binary.
+    public static <T> void convert(Class<T> serializable, File source, File target, StorageFormat format) {
+        var values = new ArrayList<T>();
+
+        deserializeLines(serializable, source, values);
+        serializeValues(serializable, target, values, format);
+    }
+
+    public static boolean isBinaryFile(File file) {
+        if (!file.exists() || file.length() < BINARY_MAGIC.length)
+            return false;
+
+        try (var stream = new FileInputStream(file)) {
+            return Arrays.equals(stream.readNBytes(BINARY_MAGIC.length), BINARY_MAGIC);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static boolean shouldMap(File file) {
+        return MAPPED_READS_SUPPORTED && file.length() >= MAPPED_READ_THRESHOLD;
+    }
+
+    private static <T> void readBinaryValues(BinaryDataSerializer<T> serializer, File file, Consumer<T> consumer) {
+        try (var stream = shouldMap(file) ? MappedFileReader.openInputStream(file) : new BufferedInputStream(new FileInputStream(file), 64 * 1024)) {
+            var input = new BinaryDataInput(stream);
+            var checksum = new CRC32();
+
+            stream.skipNBytes(BINARY_MAGIC.length);
+
+            while (true) {
+                int length;
+
+                try {
+                    length = input.readVarInt();
+                } catch (EOFException e) {
+                    break;
+                }
+
+                if (length == 0) {
+                    if (input.readInt() != (int) checksum.getValue())
+                        throw new IllegalStateException("Data file " + file.getName() + " does not match its checksum, it may be corrupted!");
+
+                    // More records may have been appended since, with their own checksum.
+                    checksum.reset();
+                    continue;
+                }
+
+                var bytes = new byte[length];
+                input.readFully(bytes);
+                checksum.update(bytes);
+
+                consumer.accept(serializer.readBinary(new BinaryDataInput(new ByteArrayInputStream(bytes))));
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    // Lazily deserializes the file as it is consumed. The stream must be closed once finished with.
+    public static <T> Stream<T> streamValues(Class<T> serializable, File file) {
         try {
-            if (file.exists()) {
-                var serializer = getSerializerFor(serializable);
-                var lines = Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+            if (!file.exists())
+                return Stream.empty();
+
+            if (isBinaryFile(file)) {
+                // Binary records aren't line based, so these are just read up front.
+                var values = new ArrayList<T>();
+                deserializeLines(serializable, file, values);
 
-                for (String line : lines) {
-                    list.add(serializer.deserialize(line));
+                return values.stream();
+            }
+
+            var serializer = getSerializerFor(serializable);
+
+            // Unlike forEachLine, this does not verify the checksum trailer, as the stream may never be read to the end.
+            return Files.lines(file.toPath(), StandardCharsets.UTF_8)
+                .filter(line -> !line.isEmpty() && !line.startsWith(CHECKSUM_PREFIX))
+                .map(serializer::deserialize);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    // Reads every line of the file, verifying the lines before each checksum trailer against it. Lines after the last
+    // trailer (or in a file without any) can't be verified.
+    public static void forEachLine(File file, Consumer<String> consumer) {
+        if (!file.exists())
+            return;
+
+        var checksum = new CRC32();
+        var lineCount = new long[1];
+
+        // Checks a trailer against the lines since the one before it. Appended files can have any number of them.
+        Consumer<String> checkTrailer = line -> {
+            if (line.startsWith(CHECKSUM_PREFIX) && !line.substring(CHECKSUM_PREFIX.length()).equals(Long.toHexString(checksum.getValue()) + " " + lineCount[0]))
+                throw new IllegalStateException("Data file " + file.getName() + " does not match its checksum, it may be corrupted!");
+
+            checksum.reset();
+            lineCount[0] = 0;
+        };
+
+        if (shouldMap(file)) {
+            MappedFileReader.forEachLine(file, (bytes, length) -> {
+                // Data lines never start with a #, so this can only be a trailer or marker.
+                if (length > 0 && bytes[0] == '#') {
+                    checkTrailer.accept(new String(bytes, 0, length, StandardCharsets.UTF_8));
+                    return;
+                }
+
+                checksum.update(bytes, 0, length);
+                checksum.update('\n');
+                lineCount[0]++;
+
+                if (length > 0)
+                    consumer.accept(new String(bytes, 0, length, StandardCharsets.UTF_8));
+            });
+        } else {
+            try (var reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8), 64 * 1024)) {
+                String line;
+
+                while ((line = reader.readLine()) != null) {
+                    if (line.startsWith("#")) {
+                        checkTrailer.accept(line);
+                        continue;
+                    }
+
+                    checksum.update(line.getBytes(StandardCharsets.UTF_8));
+                    checksum.update('\n');
+                    lineCount[0]++;
+
+                    if (line.isEmpty())
+                        continue;
+
+                    consumer.accept(line);
                 }
+            } catch (IOException e) {
+                throw new RuntimeException(e);
             }
-        } catch (Exception e) {
+        }
+    }
+
+    // Returns the "<checksum> <line count>" part of the file's trailer, or null if it was written without one.
+    private static String readChecksumTrailer(File file) {
+        try (var randomAccessFile = new RandomAccessFile(file, "r")) {
+            var length = randomAccessFile.length();
+            var tail = new byte[(int) Math.min(length, 64)];
+
+            randomAccessFile.seek(length - tail.length);
+            randomAccessFile.readFully(tail);
+
+            var text = new String(tail, StandardCharsets.UTF_8).stripTrailing();
+            var lastLine = text.substring(text.lastIndexOf('\n') + 1);
+
+            return lastLine.startsWith(CHECKSUM_PREFIX) ? lastLine.substring(CHECKSUM_PREFIX.length()) : null;
+        } catch (IOException e) {
             throw new RuntimeException(e);
         }
     }
@@ -95,31 +443,10 @@ public class DataSerializers {
     // Additionally, almost any character can be within these segments, allowing for delimiters.
     public static List<String> readSegmentedLine(String line) {
         var segments = new ArrayList<String>();
-        var stringBuilder = new StringBuilder();
+        var cursor = new SegmentCursor(line);
 
-        boolean isInSegment = false;
-        boolean isInEscape = false;
-        for (var i = 0; i < line.length(); i++) {
-            var c = line.charAt(i);
-
-            if (c == '\\' && !isInEscape) {
-                isInEscape = true;
-            } else if (isInEscape) {
-                if (isInSegment) {
-                    stringBuilder.append(c);
-                    isInEscape = false;
-                }
-            } else if (c == SEGMENT_CONTAINER) {
-                if (isInSegment) {
-                    isInSegment = false;
-                    segments.add(stringBuilder.toString());
-                    stringBuilder = new StringBuilder();
-                } else {
-                    isInSegment = true;
-                }
-            } else if (isInSegment) {
-                stringBuilder.append(c);
-            }
+        while (cursor.next()) {
+            segments.add(cursor.string());
         }
 
         return segments;
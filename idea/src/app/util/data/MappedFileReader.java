@@ -0,0 +1,140 @@
+package app.util.data;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+// Reads large data files through memory-mapped windows of the file, rather than copying them through a stream buffer.
+// Lines are scanned for straight from the mapped region, and only each line's own bytes are ever copied onto the heap.
+// Note that on Windows a mapped file can't be replaced until the mapping is garbage collected, so this is only meant
+// for the big, mostly-read files, and never used on Windows at all (see DataSerializers.MAPPED_READ_THRESHOLD).
+// Lines may end in \n, \r\n or a lone \r, the same as BufferedReader.readLine, so both ways of reading a file agree.
+public class MappedFileReader {
+    // Map at most this much of the file at once, as a single mapping can't go past 2 GB.
+    private static final long WINDOW_SIZE = 256L * 1024 * 1024;
+
+    private MappedFileReader() {}
+
+    public interface LineConsumer {
+        // The line's bytes are only valid until this returns, as the buffer is reused for the next line.
+        void accept(byte[] bytes, int length);
+    }
+
+    public static void forEachLine(File file, LineConsumer consumer) {
+        try (var channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            var size = channel.size();
+            var position = 0L;
+            var windowSize = WINDOW_SIZE;
+            var scratch = new byte[256];
+
+            while (position < size) {
+                var length = (int) Math.min(windowSize, size - position);
+                var isLastWindow = position + length == size;
+                var buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+
+                var lineStart = 0;
+                for (var i = 0; i < length; i++) {
+                    var b = buffer.get(i);
+                    if (b != '\n' && b != '\r')
+                        continue;
+
+                    // Can't tell yet whether this \r is followed by a \n, so leave the line for the next window.
+                    if (b == '\r' && i + 1 == length && !isLastWindow)
+                        break;
+
+                    scratch = emitLine(buffer, lineStart, i, scratch, consumer);
+
+                    if (b == '\r' && i + 1 < length && buffer.get(i + 1) == '\n')
+                        i++;
+
+                    lineStart = i + 1;
+                }
+
+                if (isLastWindow) {
+                    // The file doesn't necessarily end with a newline.
+                    if (lineStart < length)
+                        emitLine(buffer, lineStart, length, scratch, consumer);
+
+                    break;
+                }
+
+                if (lineStart == 0) {
+                    // A single line is bigger than the whole window, so try again with a bigger one.
+                    windowSize = Math.min(windowSize * 2, Integer.MAX_VALUE);
+                    continue;
+                }
+
+                // Continue from the start of the line that was cut off by the end of this window.
+                position += lineStart;
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static byte[] emitLine(MappedByteBuffer buffer, int start, int end, byte[] scratch, LineConsumer consumer) {
+        var length = end - start;
+
+        if (scratch.length < length)
+            scratch = new byte[Math.max(length, scratch.length * 2)];
+
+        buffer.get(start, scratch, 0, length);
+        consumer.accept(scratch, length);
+
+        return scratch;
+    }
+
+    // An input stream which reads through the file a mapped window at a time.
+    public static InputStream openInputStream(File file) throws IOException {
+        var channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+
+        return new InputStream() {
+            private final long size = channel.size();
+            private long windowStart = 0;
+            private MappedByteBuffer window = null;
+
+            private boolean ensureWindow() throws IOException {
+                if (window != null && window.hasRemaining())
+                    return true;
+
+                if (window != null)
+                    windowStart += window.capacity();
+
+                if (windowStart >= size)
+                    return false;
+
+                window = channel.map(FileChannel.MapMode.READ_ONLY, windowStart, Math.min(WINDOW_SIZE, size - windowStart));
+                return true;
+            }
+
+            @Override
+            public int read() throws IOException {
+                if (!ensureWindow())
+                    return -1;
+
+                return window.get() & 0xFF;
+            }
+
+            @Override
+            public int read(byte[] bytes, int offset, int length) throws IOException {
+                if (length == 0)
+                    return 0;
+
+                if (!ensureWindow())
+                    return -1;
+
+                var count = Math.min(length, window.remaining());
+                window.get(bytes, offset, count);
+                return count;
+            }
+
+            @Override
+            public void close() throws IOException {
+                channel.close();
+            }
+        };
+    }
+}
@@ -0,0 +1,76 @@
+package app.util.data;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Saves data in the background instead of on whatever thread changed it (usually the Swing event thread).
+// Anything marked dirty is saved at most FLUSH_DELAY_MS later, and marking the same thing dirty again before then
+// doesn't cause another save, so a burst of changes is written out in a single batch.
+public class PersistenceScheduler {
+    private static final PersistenceScheduler instance = new PersistenceScheduler();
+
+    // The longest a change can wait before it is written out. Further changes don't push this back.
+    private static final long FLUSH_DELAY_MS = 250;
+
+    public static PersistenceScheduler getInstance() {
+        return instance;
+    }
+
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        var thread = new Thread(runnable, "Persistence Scheduler");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // What needs saving, keyed by what is being saved so that repeated changes are coalesced.
+    private Map<Object, Runnable> dirty = new LinkedHashMap<>();
+    private boolean flushScheduled = false;
+    // Held while saving, so the scheduled flush and flushAll() never write the same file at the same time.
+    private final Object flushLock = new Object();
+
+    private PersistenceScheduler() {}
+
+    public void markDirty(DataSerializable data) {
+        this.markDirty(data, data::save);
+    }
+
+    // For data that is saved some other way than DataSerializable.save(), such as a single file of a manager.
+    public synchronized void markDirty(Object key, Runnable saver) {
+        dirty.put(key, saver);
+
+        if (!flushScheduled) {
+            flushScheduled = true;
+            executor.schedule(this::flushAll, FLUSH_DELAY_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    // Saves everything that has been marked dirty right away, blocking until it has been written.
+    public void flushAll() {
+        synchronized (flushLock) {
+            Map<Object, Runnable> batch;
+
+            synchronized (this) {
+                batch = dirty;
+                dirty = new LinkedHashMap<>();
+                flushScheduled = false;
+            }
+
+            batch.forEach((key, saver) -> {
+                try {
+                    saver.run();
+                } catch (Exception e) {
+                    // Try again with the next batch, unless it was changed (and so marked dirty) again in the meantime.
+                    e.printStackTrace();
+
+                    synchronized (this) {
+                        if (!dirty.containsKey(key))
+                            this.markDirty(key, saver);
+                    }
+                }
+            });
+        }
+    }
+}
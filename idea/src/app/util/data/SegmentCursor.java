@@ -0,0 +1,193 @@
+package app.util.data;
+
+import java.nio.CharBuffer;
+import java.util.UUID;
+
+// Walks over the segments of a line written by DataSerializers.writeSegmentedLine, without splitting it up first.
+// Each call to next() only records where the segment starts and ends in the original line; the contents are
+// only turned into a String when they're actually asked for. Segments without any escapes can be viewed (and
+// parsed as numbers) directly from the original characters, which also lets nested segmented lines be read
+// without copying them out first.
+public class SegmentCursor {
+    private static final char SEGMENT_CONTAINER = '"';
+    private static final char ESCAPE = '\\';
+
+    private final StringBuilder unescaped = new StringBuilder();
+
+    private CharSequence line;
+    private int position;
+    private int start;
+    private int end;
+    private boolean escaped;
+
+    public SegmentCursor() {
+        this("");
+    }
+
+    public SegmentCursor(CharSequence line) {
+        this.reset(line);
+    }
+
+    // Reuses this cursor for another line.
+    public SegmentCursor reset(CharSequence line) {
+        this.line = line;
+        this.position = 0;
+        this.start = 0;
+        this.end = 0;
+        this.escaped = false;
+        return this;
+    }
+
+    // Moves onto the next segment, returning false if there are none left.
+    public boolean next() {
+        escaped = false;
+
+        var length = line.length();
+        while (position < length) {
+            var c = line.charAt(position++);
+
+            if (c == ESCAPE) {
+                // Escapes outside a segment aren't written by us, so just skip over the escaped character.
+                position++;
+            } else if (c == SEGMENT_CONTAINER) {
+                start = position;
+
+                while (position < length) {
+                    c = line.charAt(position);
+
+                    if (c == ESCAPE) {
+                        escaped = true;
+                        position += 2;
+                    } else if (c == SEGMENT_CONTAINER) {
+                        end = position++;
+                        return true;
+                    } else {
+                        position++;
+                    }
+                }
+
+                // The segment was never closed, so it is ignored.
+                return false;
+            }
+        }
+
+        return false;
+    }
+
+    // The position of the current segment's contents within the line, including any escape characters.
+    public int start() {
+        return start;
+    }
+
+    public int end() {
+        return end;
+    }
+
+    public boolean isEscaped() {
+        return escaped;
+    }
+
+    // Returns the contents of the current segment. When the segment has no escapes this is a view over the
+    // original line, otherwise it is a buffer that is only valid until this cursor is moved or reset.
+    public CharSequence view() {
+        if (!escaped)
+            return CharBuffer.wrap(line, start, end);
+
+        unescaped.setLength(0);
+
+        for (var i = start; i < end; i++) {
+            var c = line.charAt(i);
+
+            if (c == ESCAPE) {
+                if (++i < end)
+                    unescaped.append(line.charAt(i));
+            } else {
+                unescaped.append(c);
+            }
+        }
+
+        return unescaped;
+    }
+
+    public String string() {
+        if (!escaped)
+            return line.subSequence(start, end).toString();
+
+        return view().toString();
+    }
+
+    public boolean contentEquals(String value) {
+        if (escaped)
+            return value.contentEquals(view());
+
+        if (end - start != value.length())
+            return false;
+
+        for (var i = 0; i < value.length(); i++) {
+            if (line.charAt(start + i) != value.charAt(i))
+                return false;
+        }
+
+        return true;
+    }
+
+    public int intValue() {
+        if (escaped)
+            return Integer.parseInt(view(), 0, unescaped.length(), 10);
+
+        return Integer.parseInt(line, start, end, 10);
+    }
+
+    public long longValue() {
+        if (escaped)
+            return Long.parseLong(view(), 0, unescaped.length(), 10);
+
+        return Long.parseLong(line, start, end, 10);
+    }
+
+    public double doubleValue() {
+        return Double.parseDouble(string());
+    }
+
+    public String nextString() {
+        this.require();
+        return this.string();
+    }
+
+    public int nextInt() {
+        this.require();
+        return this.intValue();
+    }
+
+    public long nextLong() {
+        this.require();
+        return this.longValue();
+    }
+
+    public double nextDouble() {
+        this.require();
+        return this.doubleValue();
+    }
+
+    public UUID nextUUID() {
+        this.require();
+        return UUID.fromString(this.string());
+    }
+
+    public <E extends Enum<E>> E nextEnum(Class<E> type) {
+        this.require();
+        return Enum.valueOf(type, this.string());
+    }
+
+    // Starts a cursor over the contents of the next segment, for segmented lines nested inside of another.
+    // Escaped contents are copied out, as the unescaped buffer is reused for this cursor's later segments.
+    public SegmentCursor nextNested() {
+        this.require();
+        return new SegmentCursor(escaped ? this.string() : this.view());
+    }
+
+    private void require() {
+        if (!this.next())
+            throw new IllegalArgumentException("Expected another segment in line: " + line);
+    }
+}
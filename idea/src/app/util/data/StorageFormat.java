@@ -0,0 +1,8 @@
+package app.util.data;
+
+public enum StorageFormat {
+    // Human-readable segmented lines.
+    TEXT,
+    // Length-prefixed binary records, for types with a BinaryDataSerializer.
+    BINARY
+}
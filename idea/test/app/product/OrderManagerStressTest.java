@@ -0,0 +1,201 @@
+package app.product;
+
+import app.auth.Account;
+import app.auth.AccountType;
+import app.auth.AuthLog;
+import app.util.data.PersistenceScheduler;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Hammers OrderManager with carts, checkouts and cancellations from a lot of threads at once, then checks that no
+// order was lost or duplicated, no stock was oversold or given back twice, and that it all survives a reload.
+// The managers load from the working directory, so run this from an empty one:
+//   java -cp out app.product.OrderManagerStressTest
+public class OrderManagerStressTest {
+    private static final int THREADS = 16;
+    private static final int OPERATIONS_PER_THREAD = 2000;
+    private static final int CUSTOMERS = 50;
+    private static final int PRODUCTS = 5;
+    private static final int INITIAL_STOCK = 2000;
+
+    public static void main(String[] args) throws Exception {
+        Account.init();
+        AuthLog.init();
+        Order.init();
+        Product.init();
+        ShoppingCart.init();
+
+        var productManager = ProductManager.getInstance();
+        var orderManager = OrderManager.getInstance();
+
+        if (!orderManager.getAllOrders().isEmpty() || !productManager.products().isEmpty())
+            throw new IllegalStateException("Run this from an empty directory, it needs to start without any data!");
+
+        var seller = new Account(AccountType.SELLER, UUID.randomUUID(), "seller@test.com", "Seller", "");
+        var products = new ArrayList<Product>();
+        for (var i = 0; i < PRODUCTS; i++) {
+            products.add(productManager.addProduct("STRESS" + i, seller, "Product " + i, "", 10 + i, INITIAL_STOCK));
+        }
+
+        var customers = new ArrayList<UUID>();
+        for (var i = 0; i < CUSTOMERS; i++) {
+            customers.add(UUID.randomUUID());
+        }
+
+        var placed = Collections.synchronizedList(new ArrayList<Order>());
+        var rejected = new AtomicInteger();
+        var pool = Executors.newFixedThreadPool(THREADS);
+        var start = new CountDownLatch(1);
+        var futures = new ArrayList<Future<?>>();
+
+        for (var t = 0; t < THREADS; t++) {
+            var random = new Random(t);
+
+            futures.add(pool.submit(() -> {
+                start.await();
+
+                for (var i = 0; i < OPERATIONS_PER_THREAD; i++) {
+                    var customer = customers.get(random.nextInt(customers.size()));
+                    var product = products.get(random.nextInt(products.size()));
+
+                    switch (random.nextInt(6)) {
+                        case 0, 1 -> orderManager.addToCart(customer, product, 1 + random.nextInt(3));
+                        case 2 -> orderManager.removeFromCart(customer, product, 1);
+                        case 3 -> orderManager.setCartQuantity(customer, product, random.nextInt(4));
+                        case 4 -> {
+                            try {
+                                placed.add(orderManager.placeOrder(customer));
+                            } catch (IllegalArgumentException e) {
+                                rejected.incrementAndGet(); // Out of stock, which is expected near the end.
+                            }
+                        }
+                        case 5 -> {
+                            // Cancel one of the orders placed so far, possibly one another thread is cancelling too.
+                            Order order;
+                            synchronized (placed) {
+                                order = placed.isEmpty() ? null : placed.get(random.nextInt(placed.size()));
+                            }
+
+                            if (order != null)
+                                orderManager.setOrderStatus(order, OrderStatus.CANCELLED);
+                        }
+                    }
+                }
+
+                return null;
+            }));
+        }
+
+        start.countDown();
+        for (var future : futures) {
+            future.get();
+        }
+        pool.shutdown();
+
+        System.out.println(placed.size() + " orders placed, " + rejected.get() + " rejected");
+        check(orderManager, products, customers, placed);
+
+        // Everything should come back the same after being written out and loaded again.
+        PersistenceScheduler.getInstance().flushAll();
+        productManager.load();
+        orderManager.load();
+
+        var reloadedProducts = new ArrayList<Product>();
+        for (Product product : products) {
+            reloadedProducts.add(productManager.getProduct(product.getBarcode()));
+        }
+
+        var reloadedOrders = new ArrayList<Order>();
+        for (Order order : placed) {
+            var reloaded = orderManager.getAllOrders().stream().filter(o -> o.getOrderId() == order.getOrderId()).findFirst().orElse(null);
+            if (reloaded == null || reloaded.getStatus() != order.getStatus())
+                throw new AssertionError("Order #" + order.getOrderId() + " did not survive reloading");
+
+            reloadedOrders.add(reloaded);
+        }
+
+        check(orderManager, reloadedProducts, customers, reloadedOrders);
+
+        // Paging through a seller's orders should give back every one of them, newest first.
+        var sellerIds = new ArrayList<Integer>();
+        var cursor = OrderPage.FIRST_PAGE;
+
+        while (true) {
+            var page = orderManager.getOrdersWithSellerPage(seller.getUUID(), cursor, 37);
+            page.orders().forEach(order -> sellerIds.add(order.getOrderId()));
+
+            if (!page.hasMore())
+                break;
+
+            cursor = page.nextCursor();
+        }
+
+        // Checking out an empty cart still places an order, but it has no seller to show up under.
+        var expectedSellerIds = reloadedOrders.stream().filter(order -> !order.getLines().isEmpty()).map(Order::getOrderId).sorted(Comparator.reverseOrder()).toList();
+        if (!sellerIds.equals(expectedSellerIds))
+            throw new AssertionError("Paging through the seller's orders gave " + sellerIds.size() + " orders out of order or missing");
+
+        // Products that were removed or sold out while in a cart are left out of the order, rather than failing it.
+        var customer = UUID.randomUUID();
+        var removed = productManager.addProduct("REMOVED", seller, "Removed", "", 1, 5);
+        var soldOut = productManager.addProduct("SOLDOUT", seller, "Sold Out", "", 1, 1);
+        var available = productManager.addProduct("AVAILABLE", seller, "Available", "", 1, 5);
+
+        orderManager.addToCart(customer, removed, 1);
+        orderManager.addToCart(customer, soldOut, 1);
+        orderManager.addToCart(customer, available, 3);
+        productManager.removeProduct(removed.getBarcode());
+        soldOut.setStock(0);
+
+        var order = orderManager.placeOrder(customer);
+        if (!order.getProducts().equals(Map.of(available.getBarcode(), 3)) || available.getStock() != 2)
+            throw new AssertionError("Ordering a cart with unavailable products gave " + order.getProducts());
+
+        System.out.println("OK");
+        System.exit(0);
+    }
+
+    private static void check(OrderManager orderManager, List<Product> products, List<UUID> customers, Collection<Order> placed) {
+        var ids = new HashSet<Integer>();
+        for (Order order : placed) {
+            if (!ids.add(order.getOrderId()))
+                throw new AssertionError("Order #" + order.getOrderId() + " was handed out twice");
+        }
+
+        if (orderManager.getAllOrders().size() != placed.size())
+            throw new AssertionError("Expected " + placed.size() + " orders, but there are " + orderManager.getAllOrders().size());
+
+        // Whatever isn't in stock must be in an order that is still going ahead.
+        for (Product product : products) {
+            var ordered = 0;
+
+            for (Order order : placed) {
+                if (order.getStatus() != OrderStatus.CANCELLED)
+                    ordered += order.getProducts().getOrDefault(product.getBarcode(), 0);
+            }
+
+            if (product.getStock() + ordered != INITIAL_STOCK)
+                throw new AssertionError(product.getBarcode() + " has " + product.getStock() + " in stock with " + ordered + " ordered, out of " + INITIAL_STOCK);
+        }
+
+        for (UUID customer : customers) {
+            var expected = placed.stream().filter(order -> order.getAccountUUID().equals(customer)).map(Order::getOrderId).sorted().toList();
+            var history = orderManager.getOrderHistory(customer).stream().map(Order::getOrderId).toList();
+
+            if (!history.equals(expected))
+                throw new AssertionError("Order history for " + customer + " is " + history + ", expected " + expected);
+
+            var page = orderManager.getOrderHistoryPage(customer, OrderPage.FIRST_PAGE, Integer.MAX_VALUE);
+            if (!page.orders().stream().map(Order::getOrderId).toList().equals(expected.reversed()) || page.hasMore())
+                throw new AssertionError("Order history page for " + customer + " isn't newest first");
+
+            var cart = orderManager.getCart(customer);
+            var items = cart.products().values().stream().mapToInt(Integer::intValue).sum();
+
+            if (cart.itemCount() != items)
+                throw new AssertionError("Cart for " + customer + " counts " + cart.itemCount() + " items, but holds " + items);
+        }
+    }
+}